@@ -0,0 +1,171 @@
+package com.hmdp.config;
+
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.Shop;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IShopTypeService;
+import com.hmdp.utils.CacheClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * @Description: 启动预热：并行加载热点店铺缓存、店铺类型、GEO 数据、名称索引、营业时间索引、秒杀库存和热门笔记排行
+ * ApplicationRunner 在 ReadinessState.ACCEPTING_TRAFFIC 发布之前执行，
+ * 因此预热阶段结束（或超出时间预算）之前，应用不会被判定为就绪
+ */
+@Slf4j
+@Component
+public class CacheWarmUpRunner implements ApplicationRunner {
+
+    @Resource
+    private IShopService shopService;
+    @Resource
+    private IShopTypeService shopTypeService;
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+    @Resource
+    private IBlogService blogService;
+    @Resource
+    private CacheClient cacheClient;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${hmdp.warmup.enabled:true}")
+    private boolean enabled;
+
+    // 预热的热点店铺数量（按销量排序）
+    @Value("${hmdp.warmup.top-n:200}")
+    private int topN;
+
+    // 预热阶段的时间预算
+    @Value("${hmdp.warmup.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(7);
+        List<CompletableFuture<Void>> tasks = Arrays.asList(
+                runStage("shop", this::warmUpShops, executor),
+                runStage("shopType", this::warmUpShopTypes, executor),
+                runStage("shopGeo", this::warmUpShopGeo, executor),
+                runStage("shopName", this::warmUpShopName, executor),
+                runStage("shopOpenHours", this::warmUpShopOpenHours, executor),
+                runStage("seckillStock", this::warmUpSeckillStock, executor),
+                runStage("blogHot", this::warmUpBlogHot, executor)
+        );
+        try {
+            // 等待全部完成，超出时间预算则放弃等待，剩余数据由正常的缓存逻辑按需加载
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]))
+                    .get(timeoutSeconds, TimeUnit.SECONDS);
+            log.info("缓存预热完成，耗时 {} ms", System.currentTimeMillis() - begin);
+        } catch (TimeoutException e) {
+            log.warn("缓存预热超出时间预算 {} s，不再等待，剩余阶段在后台继续执行", timeoutSeconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // 各阶段的异常已在 runStage 中记录
+        } finally {
+            // 不中断仍在执行的阶段：GEO 重建持有分布式锁、临时 key 写到一半，索引加载也不能中途放弃，
+            // 只是不再接收新任务，线程在各阶段完成后退出
+            executor.shutdown();
+        }
+    }
+
+    private CompletableFuture<Void> runStage(String name, Runnable stage, ExecutorService executor) {
+        return CompletableFuture.runAsync(() -> {
+            long begin = System.currentTimeMillis();
+            try {
+                stage.run();
+                log.debug("预热阶段 {} 完成，耗时 {} ms", name, System.currentTimeMillis() - begin);
+            } catch (Exception e) {
+                // 单个阶段失败不影响其他阶段，也不阻止应用启动
+                log.error("预热阶段 {} 失败", name, e);
+            }
+        }, executor);
+    }
+
+    /**
+     * 1. 按销量加载 top-N 店铺，管道写入 cache:shop:hash:{id}
+     */
+    private void warmUpShops() {
+        List<Shop> shops = shopService.query().orderByDesc("sold").last("LIMIT " + topN).list();
+        Map<String, Shop> data = new HashMap<>(shops.size());
+        for (Shop shop : shops) {
+            data.put(cacheClient.buildKey(CACHE_SHOP_HASH_KEY, shop.getId()), shop);
+        }
+        cacheClient.setHashBatch(data, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 2. 从数据库加载店铺类型列表到 cache:typelist:，并生成进程内快照
+     */
+    private void warmUpShopTypes() {
+        shopTypeService.reloadSnapshot();
+    }
+
+    /**
+     * 3. 重建 shop:geo:{typeId} 和本地空间索引
+     */
+    private void warmUpShopGeo() {
+        shopService.rebuildShopGeo();
+    }
+
+    /**
+     * 4. 构建店铺名称索引
+     */
+    private void warmUpShopName() {
+        shopService.rebuildShopNameIndex();
+    }
+
+    /**
+     * 5. 解析营业时间，构建营业时间索引
+     */
+    private void warmUpShopOpenHours() {
+        shopService.rebuildShopOpenHours();
+    }
+
+    /**
+     * 6. 加载未结束的秒杀券库存。使用 SETNX，避免覆盖已经在扣减中的库存
+     */
+    private void warmUpSeckillStock() {
+        List<SeckillVoucher> vouchers = seckillVoucherService.query()
+                .gt("end_time", LocalDateTime.now()).list();
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (SeckillVoucher voucher : vouchers) {
+                    operations.opsForValue().setIfAbsent(
+                            SECKILL_STOCK_KEY + voucher.getVoucherId(), voucher.getStock().toString());
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 7. 重建热门笔记排行 blog:hot
+     */
+    private void warmUpBlogHot() {
+        blogService.rebuildHotBlogs();
+    }
+}
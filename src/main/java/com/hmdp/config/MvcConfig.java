@@ -1,13 +1,18 @@
 package com.hmdp.config;
 
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.utils.AdminInterceptor;
 import com.hmdp.utils.LoginInterceptor;
 import com.hmdp.utils.RefreshTokenInterceptor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import javax.annotation.Resource;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @Description: 配置器
@@ -20,6 +25,10 @@ public class MvcConfig implements WebMvcConfigurer {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    // 可以访问 /admin/** 运维接口的用户 id，逗号分隔，为空时所有用户都不能访问
+    @Value("${hmdp.admin.user-ids:}")
+    private String adminUserIds;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         // 登录拦截器
@@ -28,12 +37,17 @@ public class MvcConfig implements WebMvcConfigurer {
                         "/shop/**",
                         "/voucher/**",
                         "/shop-type/**",
-                        "/upload/**",
                         "/blog/hot",
+                        "/blog/hot/scroll",
                         "/user/code",
                         "/user/login"
                 ).order(1);
 
+        // 运维接口拦截器：登录之后再校验是否是管理员
+        Set<Long> adminIds = StrUtil.split(adminUserIds, ',', true, true).stream()
+                .map(Long::valueOf).collect(Collectors.toSet());
+        registry.addInterceptor(new AdminInterceptor(adminIds)).addPathPatterns("/admin/**").order(2);
+
         // token 刷新拦截器
         // 先执行：拦截所有请求
         registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate)).addPathPatterns("/**").order(0);
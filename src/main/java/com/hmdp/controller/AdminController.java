@@ -0,0 +1,98 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IShopTypeService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheStats;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.Resource;
+
+/**
+ * @Description: 运维接口：缓存统计等，只有 hmdp.admin.user-ids 中配置的管理员可以访问（见 AdminInterceptor）
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    @Resource
+    private CacheStats cacheStats;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private IShopTypeService shopTypeService;
+
+    /**
+     * 查询各 keyPrefix 的缓存命中、回源耗时、锁竞争等统计
+     * @return 统计快照
+     */
+    @GetMapping("/cache/stats")
+    public Result cacheStats() {
+        return Result.ok(cacheStats.snapshot());
+    }
+
+    /**
+     * 清空缓存统计
+     */
+    @DeleteMapping("/cache/stats")
+    public Result resetCacheStats() {
+        cacheStats.reset();
+        return Result.ok();
+    }
+
+    /**
+     * 查询本节点已知的缓存命名空间版本
+     */
+    @GetMapping("/cache/version")
+    public Result cacheVersions() {
+        return Result.ok(cacheClient.namespaceVersions());
+    }
+
+    /**
+     * 升级缓存命名空间版本，使该前缀下的所有缓存立即失效
+     * @param prefix 命名空间，如 cache:shop:hash:，只能是 CacheClient.NAMESPACES 中的值
+     * @return 新版本号
+     */
+    @PostMapping("/cache/version")
+    public Result bumpCacheVersion(@RequestParam("prefix") String prefix) {
+        // 只接受已注册的命名空间
+        if (!CacheClient.NAMESPACES.contains(prefix)) {
+            return Result.fail("未知的缓存命名空间");
+        }
+        return Result.ok(cacheClient.bumpVersion(prefix));
+    }
+
+    /**
+     * 从数据库全量重建店铺 GEO 数据和本地空间索引，用于修复 Redis 与数据库不一致
+     * @return 写入的店铺数量
+     */
+    @PostMapping("/shop/geo/rebuild")
+    public Result rebuildShopGeo() {
+        int total = shopService.rebuildShopGeo();
+        return total < 0 ? Result.fail("GEO 数据正在重建，请稍后再试") : Result.ok(total);
+    }
+
+    /**
+     * 删除店铺，同时清理缓存、GEO 数据和各项本地索引
+     * @param id 店铺id
+     */
+    @DeleteMapping("/shop/{id}")
+    public Result deleteShop(@PathVariable("id") Long id) {
+        return shopService.deleteShop(id);
+    }
+
+    /**
+     * 修改 tb_shop_type 后调用：通知所有节点从数据库重建店铺类型快照
+     * @return 新的类型数据版本号
+     */
+    @PostMapping("/shop-type/changed")
+    public Result publishShopTypeChange() {
+        return Result.ok(shopTypeService.publishChange());
+    }
+}
@@ -1,9 +1,12 @@
 package com.hmdp.controller;
 
 
-import org.springframework.web.bind.annotation.RequestMapping;
+import com.hmdp.dto.Result;
+import com.hmdp.entity.BlogComments;
+import com.hmdp.service.IBlogCommentsService;
+import org.springframework.web.bind.annotation.*;
 
-import org.springframework.web.bind.annotation.RestController;
+import javax.annotation.Resource;
 
 /**
  * <p>
@@ -17,4 +20,42 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/blog-comments")
 public class BlogCommentsController {
 
+    @Resource
+    private IBlogCommentsService blogCommentsService;
+
+    /**
+     * 发表评论或回复
+     * @param comment 评论数据
+     * @return 评论id
+     */
+    @PostMapping
+    public Result saveComment(@RequestBody BlogComments comment) {
+        return blogCommentsService.saveComment(comment);
+    }
+
+    /**
+     * 查询笔记的评论，最新在前，每条评论附带最早的几条回复
+     * @param blogId 笔记id
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 评论列表和下一页游标
+     */
+    @GetMapping("/of/blog")
+    public Result queryCommentsOfBlog(
+            @RequestParam("blogId") Long blogId,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        return blogCommentsService.queryCommentsOfBlog(blogId, cursor);
+    }
+
+    /**
+     * 查询评论的全部回复，最早在前
+     * @param parentId 一级评论id
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 回复列表和下一页游标
+     */
+    @GetMapping("/replies")
+    public Result queryReplies(
+            @RequestParam("parentId") Long parentId,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        return blogCommentsService.queryReplies(parentId, cursor);
+    }
 }
@@ -1,19 +1,16 @@
 package com.hmdp.controller;
 
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
 import com.hmdp.entity.User;
 import com.hmdp.service.IBlogService;
 import com.hmdp.service.IUserService;
-import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
-import java.util.List;
 
 /**
  * <p>
@@ -37,6 +34,26 @@ public class BlogController {
         return blogService.saveBlog(blog);
     }
 
+    /**
+     * 修改笔记
+     * @param blog 笔记数据
+     * @return 无
+     */
+    @PutMapping
+    public Result updateBlog(@RequestBody Blog blog) {
+        return blogService.updateBlog(blog);
+    }
+
+    /**
+     * 删除笔记
+     * @param id 笔记id
+     * @return 无
+     */
+    @DeleteMapping("/{id}")
+    public Result deleteBlog(@PathVariable("id") Long id) {
+        return blogService.deleteBlog(id);
+    }
+
     @PutMapping("/like/{id}")
     public Result likeBlog(@PathVariable("id") Long id) {
 
@@ -47,12 +64,20 @@ public class BlogController {
     public Result queryMyBlog(@RequestParam(value = "current", defaultValue = "1") Integer current) {
         // 获取登录用户
         UserDTO user = UserHolder.getUser();
-        // 根据用户查询
-        Page<Blog> page = blogService.query()
-                .eq("user_id", user.getId()).page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
-        return Result.ok(records);
+        return blogService.queryBlogOfUser(user.getId(), current);
+    }
+
+    /**
+     * 滚动查询我的笔记，最新在前
+     * @param lastTime 上一页返回的 minTime，第一页不传
+     * @param lastId 上一页返回的 lastId，第一页不传
+     * @return 笔记列表和下一页的起点
+     */
+    @GetMapping("/of/me/scroll")
+    public Result queryMyBlogScroll(
+            @RequestParam(value = "lastTime", required = false) Long lastTime,
+            @RequestParam(value = "lastId", required = false) Long lastId) {
+        return blogService.queryBlogOfUserScroll(UserHolder.getUser().getId(), lastTime, lastId);
     }
 
     @GetMapping("/hot")
@@ -61,6 +86,16 @@ public class BlogController {
         return blogService.queryHotBlog(current);
     }
 
+    /**
+     * 热门笔记，游标分页：下一页从上一页最后一条的位置继续
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 笔记列表和下一页游标
+     */
+    @GetMapping("/hot/scroll")
+    public Result queryHotBlogScroll(@RequestParam(value = "cursor", required = false) String cursor) {
+        return blogService.queryHotBlogScroll(cursor);
+    }
+
     @GetMapping("/{id}")
     public Result queryBlogById(@PathVariable("id") Long id){
         return blogService.queryBlogById(id);
@@ -86,12 +121,22 @@ public class BlogController {
     public Result queryBlogByUserId(
             @RequestParam(value = "current", defaultValue = "1") Integer current,
             @RequestParam("id") Long id) {
-        // 根据用户查询
-        Page<Blog> page = blogService.query()
-                .eq("user_id", id).page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
-        return Result.ok(records);
+        return blogService.queryBlogOfUser(id, current);
+    }
+
+    /**
+     * 滚动查询用户的笔记，最新在前
+     * @param id 用户id
+     * @param lastTime 上一页返回的 minTime，第一页不传
+     * @param lastId 上一页返回的 lastId，第一页不传
+     * @return 笔记列表和下一页的起点
+     */
+    @GetMapping("/of/user/scroll")
+    public Result queryBlogByUserIdScroll(
+            @RequestParam("id") Long id,
+            @RequestParam(value = "lastTime", required = false) Long lastTime,
+            @RequestParam(value = "lastId", required = false) Long lastId) {
+        return blogService.queryBlogOfUserScroll(id, lastTime, lastId);
     }
 
     @GetMapping("/of/follow")
@@ -1,15 +1,13 @@
 package com.hmdp.controller;
 
 
-import cn.hutool.core.util.StrUtil;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.service.IShopService;
-import com.hmdp.utils.SystemConstants;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import java.util.List;
 
 /**
  * <p>
@@ -36,6 +34,16 @@ public class ShopController {
         return shopService.queryById(id);
     }
 
+    /**
+     * 店铺详情页：店铺、优惠券（实时库存）、热门笔记一次返回
+     * @param id 商铺id
+     * @return 店铺详情聚合数据，missing 中列出超时降级的部分
+     */
+    @GetMapping("/{id}/detail")
+    public Result queryShopDetail(@PathVariable("id") Long id) {
+        return shopService.queryShopDetail(id);
+    }
+
     /**
      * 新增商铺信息
      * @param shop 商铺数据
@@ -43,10 +51,8 @@ public class ShopController {
      */
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
-        // 写入数据库
-        shopService.save(shop);
-        // 返回店铺id
-        return Result.ok(shop.getId());
+        // 写入数据库，并维护相关索引
+        return shopService.saveShop(shop);
     }
 
     /**
@@ -65,6 +71,7 @@ public class ShopController {
      * 根据商铺类型分页查询商铺信息
      * @param typeId 商铺类型
      * @param current 页码
+     * @param openNow 是否只查询营业中的商铺
      * @return 商铺列表
      */
     @GetMapping("/of/type")
@@ -72,10 +79,43 @@ public class ShopController {
             @RequestParam("typeId") Integer typeId,
             @RequestParam(value = "current", defaultValue = "1") Integer current,
             @RequestParam(value = "x", required = false) Double x,
-            @RequestParam(value = "y", required = false) Double y){ // 坐标可传可不传，不传代表以其他方式查询，如价格
+            @RequestParam(value = "y", required = false) Double y, // 坐标可传可不传，不传代表以其他方式查询，如价格
+            @RequestParam(value = "openNow", defaultValue = "false") Boolean openNow){ // 只查询营业中的商铺
 
         // 返回数据
-        return shopService.queryShopByType(typeId, current, x, y);
+        return shopService.queryShopByType(typeId, current, x, y, openNow);
+    }
+
+    /**
+     * 根据商铺类型查询附近商铺，游标分页：下一页从上一页最后一条的位置继续，无需重新计算之前的所有页
+     * @param typeId 商铺类型
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 商铺列表和下一页游标
+     */
+    @GetMapping("/of/type/scroll")
+    public Result queryShopByTypeScroll(
+            @RequestParam("typeId") Integer typeId,
+            @RequestParam("x") Double x,
+            @RequestParam("y") Double y,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "openNow", defaultValue = "false") Boolean openNow){
+        return shopService.queryShopByTypeScroll(typeId, x, y, cursor, openNow);
+    }
+
+    /**
+     * 同时按多个商铺类型查询附近商铺，按距离合并排序，游标分页
+     * @param typeIds 商铺类型，多个以逗号隔开，不传表示全部类型
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 商铺列表和下一页游标
+     */
+    @GetMapping("/of/types")
+    public Result queryShopByTypes(
+            @RequestParam(value = "typeIds", required = false) List<Long> typeIds,
+            @RequestParam("x") Double x,
+            @RequestParam("y") Double y,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "openNow", defaultValue = "false") Boolean openNow){
+        return shopService.queryShopByTypesScroll(typeIds, x, y, cursor, openNow);
     }
 
     /**
@@ -87,13 +127,9 @@ public class ShopController {
     @GetMapping("/of/name")
     public Result queryShopByName(
             @RequestParam(value = "name", required = false) String name,
-            @RequestParam(value = "current", defaultValue = "1") Integer current
+            @RequestParam(value = "current", defaultValue = "1") Integer current,
+            @RequestParam(value = "openNow", defaultValue = "false") Boolean openNow
     ) {
-        // 根据类型分页查询
-        Page<Shop> page = shopService.query()
-                .like(StrUtil.isNotBlank(name), "name", name)
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 返回数据
-        return Result.ok(page.getRecords());
+        return shopService.queryShopByName(name, current, openNow);
     }
 }
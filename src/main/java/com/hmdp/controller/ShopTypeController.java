@@ -1,15 +1,18 @@
 package com.hmdp.controller;
 
 
-import com.hmdp.dto.Result;
-import com.hmdp.entity.ShopType;
+import com.hmdp.dto.ShopTypeSnapshot;
 import com.hmdp.service.IShopTypeService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.annotation.Resource;
-import java.util.List;
 
 /**
  * <p>
@@ -25,8 +28,26 @@ public class ShopTypeController {
     @Resource
     private IShopTypeService typeService;
 
+    /**
+     * 查询店铺类型列表：直接返回预先序列化好的响应体；
+     * 客户端带上 If-None-Match 且与当前 ETag 一致时返回 304，不再传输响应体
+     * @param ifNoneMatch 客户端缓存的 ETag
+     * @return 类型列表（Result 格式的 JSON）
+     */
     @GetMapping("list")
-    public Result queryTypeList() {
-        return typeService.getList();
+    public ResponseEntity<String> queryTypeList(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        ShopTypeSnapshot snapshot = typeService.getSnapshot();
+        if (ifNoneMatch != null && ifNoneMatch.contains(snapshot.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.getEtag())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                // 允许客户端缓存，但每次使用前都要用 ETag 验证
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getJson());
     }
 }
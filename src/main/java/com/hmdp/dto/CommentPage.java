@@ -0,0 +1,19 @@
+package com.hmdp.dto;
+
+import com.hmdp.entity.BlogComments;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 评论分页结果，用于缓存评论首页：list 声明了元素类型，从缓存反序列化时能还原为 BlogComments
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentPage {
+    private List<BlogComments> list;
+    private String cursor;
+}
@@ -9,4 +9,8 @@ public class ScrollResult {
     private List<?> list;
     private Long minTime;
     private Integer offset;
+    /**
+     * 按 (create_time, id) 滚动时，上一页最后一条的 id，与 minTime 一起作为下一页的起点
+     */
+    private Long lastId;
 }
@@ -0,0 +1,20 @@
+package com.hmdp.dto;
+
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.Voucher;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 店铺详情页聚合数据：店铺、优惠券（实时库存）、热门笔记。
+ * missing 列出超时或失败而被降级为空的部分，为空表示数据完整
+ */
+@Data
+public class ShopDetailDTO {
+    private Shop shop;
+    private List<Voucher> vouchers;
+    private List<Blog> blogs;
+    private List<String> missing;
+}
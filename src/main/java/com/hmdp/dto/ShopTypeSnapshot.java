@@ -0,0 +1,20 @@
+package com.hmdp.dto;
+
+import com.hmdp.entity.ShopType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 店铺类型列表的不可变快照：类型列表、预先序列化好的响应体及其 ETag。
+ * version 为生成快照时类型数据的版本（shop:type:version），版本变化后快照失效
+ */
+@Getter
+@AllArgsConstructor
+public class ShopTypeSnapshot {
+    private final List<ShopType> list;
+    private final String json;
+    private final String etag;
+    private final long version;
+}
@@ -4,6 +4,7 @@ import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.experimental.Accessors;
@@ -82,6 +83,12 @@ public class Blog implements Serializable {
      */
     private Integer comments;
 
+    /**
+     * 最后写回的点赞批次号，用于判断正在写回的增量是否已经计入 liked
+     */
+    @JsonIgnore
+    private Long likeBatch;
+
     /**
      * 创建时间
      */
@@ -2,6 +2,9 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.BlogComments;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,11 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface BlogCommentsMapper extends BaseMapper<BlogComments> {
 
+    /**
+     * 查询多个一级评论各自最早的 size 条回复
+     * @param parentIds 一级评论id
+     * @param size 每个一级评论的回复数量
+     * @return 回复，按一级评论分组、组内 id 升序
+     */
+    List<BlogComments> queryReplyPreviews(@Param("parentIds") List<Long> parentIds, @Param("size") int size);
 }
@@ -4,6 +4,8 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.Blog;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -16,8 +18,18 @@ public interface IBlogService extends IService<Blog> {
 
     Result queryHotBlog(Integer current);
 
+    Result queryHotBlogScroll(String cursor);
+
+    int rebuildHotBlogs();
+
     Result queryBlogById(Long id);
 
+    Result updateBlog(Blog blog);
+
+    Result deleteBlog(Long id);
+
+    void refreshBlogDetail(Long id);
+
     Result likeBlog(Long id);
 
     Result queryBlogLikes(Long id);
@@ -25,4 +37,10 @@ public interface IBlogService extends IService<Blog> {
     Result saveBlog(Blog blog);
 
     Result queryBlogOfFollow(Long max, Integer offset);
+
+    Result queryBlogOfUser(Long userId, Integer current);
+
+    Result queryBlogOfUserScroll(Long userId, Long lastTime, Long lastId);
+
+    List<Blog> queryTopBlogsOfShop(Long shopId, int count, Long userId);
 }
@@ -0,0 +1,25 @@
+package com.hmdp.service;
+
+import com.hmdp.dto.Result;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * 图片上传 service 层
+ */
+public interface IImageService {
+
+    /**
+     * 上传笔记图片：边写入磁盘边计算 SHA-256，内容相同的图片只保存一份，缩略图在后台生成
+     * @param image 图片，格式由文件头识别
+     * @param userId 上传者，记录为该图片的一个引用
+     * @return 图片的相对路径
+     */
+    Result uploadBlogImage(MultipartFile image, Long userId);
+
+    /**
+     * 删除笔记图片：只能删除自己上传的引用，所有引用都删除后才删除文件及其缩略图
+     * @param filename 上传时返回的相对路径
+     * @param userId 当前用户
+     */
+    Result deleteBlogImage(String filename, Long userId);
+}
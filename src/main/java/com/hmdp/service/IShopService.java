@@ -4,6 +4,8 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -16,7 +18,25 @@ public interface IShopService extends IService<Shop> {
 
     Result queryById(Long id);
 
+    Result queryShopDetail(Long id);
+
+    Result saveShop(Shop shop);
+
     Result update(Shop shop);
 
-    Result queryShopByType(Integer typeId, Integer current, Double x, Double y);
+    Result deleteShop(Long id);
+
+    int rebuildShopGeo();
+
+    int rebuildShopNameIndex();
+
+    int rebuildShopOpenHours();
+
+    Result queryShopByName(String name, Integer current, Boolean openNow);
+
+    Result queryShopByType(Integer typeId, Integer current, Double x, Double y, Boolean openNow);
+
+    Result queryShopByTypeScroll(Integer typeId, Double x, Double y, String cursor, Boolean openNow);
+
+    Result queryShopByTypesScroll(List<Long> typeIds, Double x, Double y, String cursor, Boolean openNow);
 }
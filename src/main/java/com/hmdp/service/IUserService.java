@@ -3,9 +3,12 @@ package com.hmdp.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 
 import javax.servlet.http.HttpSession;
+import java.util.Collection;
+import java.util.Map;
 
 /**
  * 用户 service 层
@@ -30,4 +33,11 @@ public interface IUserService extends IService<User> {
     Result sign();
 
     Result signCount();
+
+    /**
+     * 批量查询用户公开信息，一次批量缓存查询，未命中的一次回源数据库
+     * @param ids 用户id
+     * @return id -> 用户，迭代顺序与 ids 一致，不存在的用户不在结果中
+     */
+    Map<Long, UserDTO> queryUserDTOs(Collection<Long> ids);
 }
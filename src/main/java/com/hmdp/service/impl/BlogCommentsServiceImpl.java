@@ -1,11 +1,32 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.CommentPage;
+import com.hmdp.dto.CursorResult;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
 import com.hmdp.entity.BlogComments;
 import com.hmdp.mapper.BlogCommentsMapper;
 import com.hmdp.service.IBlogCommentsService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CursorUtils;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_COMMENTS_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_COMMENTS_TTL;
+
 /**
  * <p>
  *  服务实现类
@@ -17,4 +38,186 @@ import org.springframework.stereotype.Service;
 @Service
 public class BlogCommentsServiceImpl extends ServiceImpl<BlogCommentsMapper, BlogComments> implements IBlogCommentsService {
 
+    @Resource
+    private IBlogService blogService;
+    @Resource
+    private IUserService userService;
+    @Resource
+    private CacheClient cacheClient;
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 发表评论或回复：保存评论，笔记评论数 +1，删除评论首页缓存。
+     * 不放在事务中执行：缓存必须在数据写入后删除，否则并发的读请求可能把提交前的旧数据重新写入缓存
+     * @param comment blogId、content 必填；回复时 parentId 为一级评论id，answerId 为被回复的评论id（默认为 parentId）
+     * @return 评论id
+     */
+    @Override
+    public Result saveComment(BlogComments comment) {
+        if (comment.getBlogId() == null || StrUtil.isBlank(comment.getContent())) {
+            return Result.fail("评论内容不能为空！");
+        }
+        // 1. 校验笔记
+        Blog blog = blogService.getById(comment.getBlogId());
+        if (blog == null) {
+            return Result.fail("笔记不存在！");
+        }
+        // 2. 校验回复关系：parentId 必须是同一篇笔记的一级评论，answerId 必须在同一个评论串中
+        long parentId = comment.getParentId() == null ? 0L : comment.getParentId();
+        long answerId = parentId;
+        if (parentId != 0) {
+            BlogComments parent = getById(parentId);
+            if (parent == null || !parent.getBlogId().equals(blog.getId()) || parent.getParentId() != 0) {
+                return Result.fail("回复的评论不存在！");
+            }
+            if (comment.getAnswerId() != null && comment.getAnswerId() != parentId) {
+                BlogComments answer = getById(comment.getAnswerId());
+                if (answer == null || answer.getParentId() != parentId) {
+                    return Result.fail("回复的评论不存在！");
+                }
+                answerId = comment.getAnswerId();
+            }
+        }
+
+        // 3. 保存评论
+        BlogComments entity = new BlogComments()
+                .setUserId(UserHolder.getUser().getId())
+                .setBlogId(blog.getId())
+                .setParentId(parentId)
+                .setAnswerId(answerId)
+                .setContent(comment.getContent())
+                .setLiked(0)
+                .setStatus(false);
+        save(entity);
+
+        // 4. 笔记评论数 +1 update tb_blog set comments = comments + 1 where id = ?
+        blogService.update().setSql("comments = IFNULL(comments, 0) + 1").eq("id", blog.getId()).update();
+
+        // 5. 删除评论首页缓存（新的一级评论在首页，新的回复可能出现在首页的预加载回复中），刷新已缓存的笔记详情
+        stringRedisTemplate.delete(cacheClient.buildKey(CACHE_BLOG_COMMENTS_KEY, blog.getId()));
+        blogService.refreshBlogDetail(blog.getId());
+        return Result.ok(entity.getId());
+    }
+
+    /**
+     * 查询笔记的一级评论，按 id 降序（最新在前）游标分页，每条预加载最早的几条回复。
+     * 首页是绝大多数请求，缓存在 cache:blog:comments:{blogId}，有新评论时删除
+     * @param blogId 笔记id
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 评论列表和下一页游标
+     */
+    @Override
+    public Result queryCommentsOfBlog(Long blogId, String cursor) {
+        // 1. 首页走缓存
+        if (cursor == null) {
+            CommentPage page = cacheClient.queryWithPassThrough(CACHE_BLOG_COMMENTS_KEY, blogId, CommentPage.class,
+                    id -> loadComments(id, Long.MAX_VALUE), CACHE_BLOG_COMMENTS_TTL, TimeUnit.MINUTES);
+            if (page == null) {
+                return Result.ok(new CursorResult(Collections.emptyList(), null));
+            }
+            return Result.ok(new CursorResult(page.getList(), page.getCursor()));
+        }
+        // 2. 之后的页从游标位置继续
+        long lastId;
+        try {
+            lastId = CursorUtils.decode(cursor, 1).getLong(0, 1, Long.MAX_VALUE);
+        } catch (IllegalArgumentException e) {
+            return Result.fail("无效的游标");
+        }
+        CommentPage page = loadComments(blogId, lastId);
+        return Result.ok(new CursorResult(page.getList(), page.getCursor()));
+    }
+
+    /**
+     * 查询一级评论下的回复，按 id 升序（最早在前）游标分页
+     * @param parentId 一级评论id
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 回复列表和下一页游标
+     */
+    @Override
+    public Result queryReplies(Long parentId, String cursor) {
+        long lastId = 0;
+        if (cursor != null) {
+            try {
+                lastId = CursorUtils.decode(cursor, 1).getLong(0, 1, Long.MAX_VALUE);
+            } catch (IllegalArgumentException e) {
+                return Result.fail("无效的游标");
+            }
+        }
+        // select * from tb_blog_comments where parent_id = ? and id > ? order by id limit size + 1
+        int size = SystemConstants.MAX_PAGE_SIZE;
+        List<BlogComments> replies = query()
+                .eq("parent_id", parentId)
+                .gt("id", lastId)
+                .apply("IFNULL(status, 0) != 2")
+                .orderByAsc("id")
+                .last("LIMIT " + (size + 1))
+                .list();
+        String next = null;
+        if (replies.size() > size) {
+            replies = replies.subList(0, size);
+            next = CursorUtils.encode(replies.get(size - 1).getId());
+        }
+        hydrateUsers(replies);
+        return Result.ok(new CursorResult(replies, next));
+    }
+
+    /**
+     * 查询一页一级评论（id < lastId，多查一条用于判断是否有下一页），一次查询预加载所有评论的前几条回复，一次批量查询用户
+     * @return 评论页；没有任何评论时返回 null，由缓存写入空值
+     */
+    private CommentPage loadComments(Long blogId, long lastId) {
+        // 1. 查询一级评论 select * from tb_blog_comments where blog_id = ? and parent_id = 0 and id < ? order by id desc limit size + 1
+        int size = SystemConstants.MAX_PAGE_SIZE;
+        List<BlogComments> comments = query()
+                .eq("blog_id", blogId)
+                .eq("parent_id", 0)
+                .lt("id", lastId)
+                .apply("IFNULL(status, 0) != 2")
+                .orderByDesc("id")
+                .last("LIMIT " + (size + 1))
+                .list();
+        if (comments.isEmpty()) {
+            return lastId == Long.MAX_VALUE ? null : new CommentPage(comments, null);
+        }
+        String next = null;
+        if (comments.size() > size) {
+            comments = new ArrayList<>(comments.subList(0, size));
+            next = CursorUtils.encode(comments.get(size - 1).getId());
+        }
+
+        // 2. 一次查询所有一级评论的前几条回复
+        List<Long> parentIds = comments.stream().map(BlogComments::getId).collect(Collectors.toList());
+        List<BlogComments> replies = baseMapper.queryReplyPreviews(parentIds, SystemConstants.COMMENT_REPLY_PREVIEW_SIZE);
+        Map<Long, List<BlogComments>> repliesByParent = replies.stream()
+                .collect(Collectors.groupingBy(BlogComments::getParentId));
+        for (BlogComments comment : comments) {
+            comment.setReplies(repliesByParent.getOrDefault(comment.getId(), Collections.emptyList()));
+        }
+
+        // 3. 一次批量查询评论和回复的用户
+        List<BlogComments> all = new ArrayList<>(comments);
+        all.addAll(replies);
+        hydrateUsers(all);
+        return new CommentPage(comments, next);
+    }
+
+    /**
+     * 批量填充评论用户的昵称和头像
+     */
+    private void hydrateUsers(List<BlogComments> comments) {
+        if (comments.isEmpty()) {
+            return;
+        }
+        Set<Long> userIds = comments.stream().map(BlogComments::getUserId).collect(Collectors.toSet());
+        Map<Long, UserDTO> users = userService.queryUserDTOs(userIds);
+        for (BlogComments comment : comments) {
+            UserDTO user = users.get(comment.getUserId());
+            if (user != null) {
+                comment.setName(user.getNickName());
+                comment.setIcon(user.getIcon());
+            }
+        }
+    }
 }
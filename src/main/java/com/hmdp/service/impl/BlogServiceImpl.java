@@ -1,34 +1,58 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.extension.conditions.query.QueryChainWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.dto.CursorResult;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.ScrollResult;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
 import com.hmdp.entity.Follow;
-import com.hmdp.entity.User;
 import com.hmdp.mapper.BlogMapper;
 import com.hmdp.service.IBlogService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.service.IFollowService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CursorUtils;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import com.hmdp.utils.RedisConstants;
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import static com.hmdp.utils.RedisConstants.FEED_KEY;
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
  * <p>
@@ -38,6 +62,7 @@ import static com.hmdp.utils.RedisConstants.FEED_KEY;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
@@ -47,49 +72,368 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     private StringRedisTemplate stringRedisTemplate;
     @Resource
     private IFollowService followService;
+    @Resource
+    private RedissonClient redissonClient;
+    @Resource
+    private CacheClient cacheClient;
+
+    // 粉丝数达到该值的作者不再推送到粉丝收件箱，粉丝读取动态时从作者发件箱拉取
+    @Value("${hmdp.feed.push-threshold:10000}")
+    private long pushThreshold;
+
+    // 收件箱最多保留的笔记数量
+    @Value("${hmdp.feed.inbox-max-size:500}")
+    private int inboxMaxSize;
+
+    // 收件箱的过期时间（天），每次读取关注动态时续期，长期未活跃用户的收件箱自动过期
+    @Value("${hmdp.feed.inbox-ttl-days:30}")
+    private long inboxTtlDays;
+
+    // 热门排行中一个赞相当于提前发布的秒数，越小则时间衰减越慢
+    @Value("${hmdp.blog.hot.like-seconds:3600}")
+    private long hotLikeSeconds;
+
+    // 热门排行分数中发布时间的起点：2022-01-01 00:00:00
+    private static final long HOT_EPOCH_SECOND = 1640995200L;
+
+    private static final DefaultRedisScript<Long> BLOG_LIKE_SCRIPT;
+    private static final DefaultRedisScript<Long> BLOG_LIKE_BATCH_SCRIPT;
+    private static final DefaultRedisScript<Long> BLOG_HOT_SWAP_SCRIPT;
+    static {
+        BLOG_LIKE_SCRIPT = new DefaultRedisScript<>();
+        BLOG_LIKE_SCRIPT.setLocation(new ClassPathResource("blog_like.lua"));
+        BLOG_LIKE_SCRIPT.setResultType(Long.class);
+        BLOG_LIKE_BATCH_SCRIPT = new DefaultRedisScript<>();
+        BLOG_LIKE_BATCH_SCRIPT.setLocation(new ClassPathResource("blog_like_batch.lua"));
+        BLOG_LIKE_BATCH_SCRIPT.setResultType(Long.class);
+        BLOG_HOT_SWAP_SCRIPT = new DefaultRedisScript<>();
+        BLOG_HOT_SWAP_SCRIPT.setLocation(new ClassPathResource("blog_hot_swap.lua"));
+        BLOG_HOT_SWAP_SCRIPT.setResultType(Long.class);
+    }
 
+    private static final DefaultRedisScript<Long> FEED_PUSH_SCRIPT;
+    static {
+        FEED_PUSH_SCRIPT = new DefaultRedisScript<>();
+        FEED_PUSH_SCRIPT.setLocation(new ClassPathResource("feed_push.lua"));
+        FEED_PUSH_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 热门笔记：从 blog:hot 排行中分页，不再对 tb_blog 按 liked 排序；排行不存在时（尚未重建）回退到数据库
+     * @param current 页码
+     * @return
+     */
     @Override
     public Result queryHotBlog(Integer current) {
-        // 根据用户查询
-        Page<Blog> page = query()
-                .orderByDesc("liked")
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
-        // 查询用户
-        records.forEach(blog -> {
-            this.queryBlogUser(blog);
-            this.isBlogLiked(blog);
-        });
-        return Result.ok(records);
+        // 1. 查询排行 zrevrange blog:hot start end
+        long start = (long) (current - 1) * SystemConstants.MAX_PAGE_SIZE;
+        Set<String> members = stringRedisTemplate.opsForZSet()
+                .reverseRange(BLOG_HOT_KEY, start, start + SystemConstants.MAX_PAGE_SIZE - 1);
+        if (members == null || members.isEmpty()) {
+            if (BooleanUtil.isTrue(stringRedisTemplate.hasKey(BLOG_HOT_KEY))) {
+                return Result.ok(Collections.emptyList());
+            }
+            // 2. 排行不存在，回退到数据库
+            Page<Blog> page = query()
+                    .orderByDesc("liked")
+                    .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
+            List<Blog> records = page.getRecords();
+            hydrateBlogs(records, currentUserId());
+            return Result.ok(records);
+        }
+        // 3. 根据 id 查询 blog 并批量查询用户和点赞状态
+        List<Blog> blogs = listBlogsByIds(members.stream().map(Long::valueOf).collect(Collectors.toList()));
+        hydrateBlogs(blogs, currentUserId());
+        return Result.ok(blogs);
+    }
+
+    /**
+     * 热门笔记，游标分页。游标为上一页最后一条的 score 和 id，
+     * 下一页从 score <= 游标 score 的位置继续，跳过 score 相同且排在游标之前（id 字典序更大）的笔记
+     * @param cursor 上一页返回的游标，第一页为 null
+     * @return
+     */
+    @Override
+    public Result queryHotBlogScroll(String cursor) {
+        double max = Double.POSITIVE_INFINITY;
+        String after = null;
+        if (cursor != null) {
+            try {
+                CursorUtils.Cursor parsed = CursorUtils.decode(cursor, 2);
+                max = parsed.getDouble(0, -Double.MAX_VALUE, Double.MAX_VALUE);
+                after = String.valueOf(parsed.getLong(1, 1, Long.MAX_VALUE));
+            } catch (IllegalArgumentException e) {
+                return Result.fail("无效的游标");
+            }
+        }
+        int size = SystemConstants.MAX_PAGE_SIZE;
+
+        // 1. 从游标位置向后读取 size + 1 条，多读的一条用于判断是否还有下一页
+        List<ZSetOperations.TypedTuple<String>> page = new ArrayList<>(size + 1);
+        long offset = 0;
+        while (page.size() <= size) {
+            Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                    .reverseRangeByScoreWithScores(BLOG_HOT_KEY, Double.NEGATIVE_INFINITY, max, offset, size + 1);
+            if (tuples == null || tuples.isEmpty()) {
+                break;
+            }
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                // 1.1 score 与游标相同时，字典序不小于游标 id 的都已经返回过了
+                if (after != null && tuple.getScore() == max && tuple.getValue().compareTo(after) >= 0) {
+                    continue;
+                }
+                if (page.size() <= size) {
+                    page.add(tuple);
+                }
+            }
+            if (tuples.size() < size + 1) {
+                break;
+            }
+            offset += tuples.size();
+        }
+
+        // 2. 生成下一页游标
+        String next = null;
+        if (page.size() > size) {
+            page = page.subList(0, size);
+            ZSetOperations.TypedTuple<String> last = page.get(size - 1);
+            next = CursorUtils.encode(last.getScore(), last.getValue());
+        }
+
+        // 3. 根据 id 查询 blog 并批量查询用户和点赞状态
+        List<Long> ids = page.stream().map(t -> Long.valueOf(t.getValue())).collect(Collectors.toList());
+        List<Blog> blogs = listBlogsByIds(ids);
+        hydrateBlogs(blogs, currentUserId());
+        return Result.ok(new CursorResult(blogs, next));
+    }
+
+    /**
+     * 重建热门笔记排行：按 id 游标分批读取笔记并计算分数，保留分数最高的 BLOG_HOT_MAX 篇，
+     * 写入临时 key 后由 Lua 脚本原子地替换。修正点赞增量的偏差，并让新的时间衰减参数生效。
+     * 多个节点之间用分布式锁互斥；重建期间持有点赞写回锁，开始前先写回全部增量，使数据库中的点赞数与待写回的增量不重叠，
+     * 替换时叠加待写回的增量，重建期间的点赞不会丢失
+     * @return 排行中的笔记数量，其他节点正在重建或点赞数写回失败时返回 -1
+     */
+    @Override
+    public int rebuildHotBlogs() {
+        RLock rebuildLock = redissonClient.getLock(LOCK_BLOG_HOT_REBUILD_KEY);
+        if (!rebuildLock.tryLock()) {
+            log.debug("其他节点正在重建热门笔记排行，跳过");
+            return -1;
+        }
+        RLock flushLock = redissonClient.getLock(LOCK_BLOG_LIKE_FLUSH_KEY);
+        try {
+            flushLock.lock();
+            try {
+                // 先把增量全部写回数据库，没有写完的批次会与扫描结果重叠，放弃本次重建
+                if (!doFlushLikes()) {
+                    log.warn("点赞数写回未完成，跳过本次热门排行重建");
+                    return -1;
+                }
+                return doRebuildHotBlogs();
+            } finally {
+                flushLock.unlock();
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private int doRebuildHotBlogs() {
+        long begin = System.currentTimeMillis();
+        // 1. 按 id 游标分批读取，用大小为 BLOG_HOT_MAX 的小顶堆保留分数最高的笔记
+        PriorityQueue<ZSetOperations.TypedTuple<String>> heap = new PriorityQueue<>(BLOG_HOT_MAX + 1,
+                Comparator.comparingDouble(ZSetOperations.TypedTuple::getScore));
+        long lastId = 0;
+        while (true) {
+            List<Blog> chunk = query().select("id", "liked", "create_time")
+                    .gt("id", lastId).orderByAsc("id")
+                    .last("LIMIT " + BLOG_REBUILD_BATCH).list();
+            if (chunk.isEmpty()) {
+                break;
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+            for (Blog blog : chunk) {
+                heap.offer(new DefaultTypedTuple<>(blog.getId().toString(), hotScore(blog.getLiked(), blog.getCreateTime())));
+                if (heap.size() > BLOG_HOT_MAX) {
+                    heap.poll();
+                }
+            }
+            if (chunk.size() < BLOG_REBUILD_BATCH) {
+                break;
+            }
+        }
+        if (heap.isEmpty()) {
+            return 0;
+        }
+
+        // 2. 写入临时 key，再由脚本叠加待写回的增量、保留重建期间新发布的笔记，并原子地替换
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>(heap);
+        stringRedisTemplate.delete(BLOG_HOT_REBUILD_KEY);
+        stringRedisTemplate.opsForZSet().add(BLOG_HOT_REBUILD_KEY, tuples);
+        Long size = stringRedisTemplate.execute(BLOG_HOT_SWAP_SCRIPT,
+                Arrays.asList(BLOG_HOT_REBUILD_KEY, BLOG_HOT_KEY, BLOG_LIKED_PENDING_KEY),
+                String.valueOf(lastId), String.valueOf(BLOG_HOT_MAX));
+        log.info("热门笔记排行重建完成，共 {} 篇笔记，耗时 {} ms", size, System.currentTimeMillis() - begin);
+        return size == null ? 0 : size.intValue();
+    }
+
+    /**
+     * 定时重建热门笔记排行
+     */
+    @Scheduled(fixedDelayString = "${hmdp.blog.hot.rebuild-ms:600000}",
+            initialDelayString = "${hmdp.blog.hot.rebuild-ms:600000}")
+    public void scheduledRebuildHotBlogs() {
+        try {
+            rebuildHotBlogs();
+        } catch (Exception e) {
+            log.error("重建热门笔记排行失败", e);
+        }
+    }
+
+    /**
+     * 笔记详情已缓存时，从数据库重新加载并写入缓存；未缓存的笔记不处理
+     */
+    @Override
+    public void refreshBlogDetail(Long id) {
+        String key = cacheClient.buildKey(CACHE_BLOG_KEY, id);
+        if (!BooleanUtil.isTrue(stringRedisTemplate.hasKey(key))) {
+            return;
+        }
+        Blog blog = loadBlogDetail(id);
+        if (blog == null) {
+            stringRedisTemplate.delete(key);
+            return;
+        }
+        cacheClient.setWithLogicalExpire(key, blog, CACHE_BLOG_TTL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 热门分数：点赞数 + 发布时间（秒）/ hotLikeSeconds。
+     * 发布晚 hotLikeSeconds 秒相当于多一个赞，旧笔记需要越来越多的赞才能留在前列；分数只随点赞变化，可以增量维护
+     */
+    private double hotScore(Integer liked, LocalDateTime createTime) {
+        // 与 RedisIdWorker 相同，按 UTC 换算本地时间，新发布的笔记与数据库中读取的笔记使用同一基准
+        LocalDateTime time = createTime == null ? LocalDateTime.now() : createTime;
+        long second = time.toEpochSecond(ZoneOffset.UTC);
+        return (liked == null ? 0 : liked) + (double) (second - HOT_EPOCH_SECOND) / hotLikeSeconds;
+    }
+
+    /**
+     * 根据 id 查询笔记，顺序与 ids 一致
+     */
+    private List<Blog> listBlogsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String idStr = StrUtil.join(",", ids);
+        return query().in("id", ids).last("order by field(id," + idStr + ")").list();
     }
 
     @Override
     public Result queryBlogById(Long id) {
-        // 1. 查询 blog
-        Blog blog = getById(id);
+        // 1. 查询 blog（逻辑过期缓存，已包含作者昵称和头像）
+        Blog blog = queryBlogDetail(id);
         if (blog == null) {
             return Result.fail("笔记不存在！");
         }
 
-        // 2. 查询 blog 有关的用户
-        queryBlogUser(blog);
-
-        // 3. 查询是否被点赞
-        isBlogLiked(blog);
+        // 2. 叠加尚未写回的点赞数，查询当前用户是否点赞（因人而异，不放入缓存）
+        overlayLikes(Collections.singletonList(blog), currentUserId());
 
         return Result.ok(blog);
     }
 
+    /**
+     * 修改笔记：只有作者可以修改标题、图片、内容和关联的商户，修改后删除详情缓存
+     * @param blog 笔记数据
+     * @return
+     */
+    @Override
+    public Result updateBlog(Blog blog) {
+        if (blog.getId() == null) {
+            return Result.fail("笔记id不能为空");
+        }
+        // 1. 校验作者
+        Blog old = getById(blog.getId());
+        if (old == null) {
+            return Result.fail("笔记不存在！");
+        }
+        if (!old.getUserId().equals(UserHolder.getUser().getId())) {
+            return Result.fail("只能修改自己的笔记！");
+        }
+        // 2. 更新数据库，点赞数、评论数等字段不允许通过该接口修改
+        Blog update = new Blog()
+                .setId(blog.getId())
+                .setShopId(blog.getShopId())
+                .setTitle(blog.getTitle())
+                .setImages(blog.getImages())
+                .setContent(blog.getContent());
+        updateById(update);
+        // 3. 删除缓存
+        stringRedisTemplate.delete(cacheClient.buildKey(CACHE_BLOG_KEY, blog.getId()));
+        return Result.ok();
+    }
+
+    /**
+     * 删除笔记：只有作者可以删除，同时删除详情缓存、点赞数据，并从热门排行和作者发件箱中移除。
+     * 粉丝收件箱中的笔记 id 不再逐个删除，读取时查询不到的笔记会被忽略
+     * @param id 笔记id
+     * @return
+     */
+    @Override
+    public Result deleteBlog(Long id) {
+        // 1. 校验作者
+        Blog blog = getById(id);
+        if (blog == null) {
+            return Result.fail("笔记不存在！");
+        }
+        if (!blog.getUserId().equals(UserHolder.getUser().getId())) {
+            return Result.fail("只能删除自己的笔记！");
+        }
+        // 2. 删除数据库记录
+        removeById(id);
+        // 3. 删除缓存和相关的 Redis 数据
+        String member = id.toString();
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                operations.delete(cacheClient.buildKey(CACHE_BLOG_KEY, id));
+                operations.delete(BLOG_LIKED_KEY + id);
+                operations.opsForHash().delete(BLOG_LIKED_PENDING_KEY, member);
+                operations.opsForZSet().remove(BLOG_HOT_KEY, member);
+                operations.opsForZSet().remove(FEED_OUTBOX_KEY + blog.getUserId(), member);
+                return null;
+            }
+        });
+        return Result.ok();
+    }
+
+    /**
+     * 通过逻辑过期缓存查询笔记详情，缓存中包含作者昵称和头像，不包含因人而异的点赞状态
+     */
+    private Blog queryBlogDetail(Long id) {
+        return cacheClient.queryWithLogicalExpire(
+                CACHE_BLOG_KEY, id, Blog.class, this::loadBlogDetail, CACHE_BLOG_TTL, TimeUnit.MINUTES);
+    }
+
+    private Blog loadBlogDetail(Long id) {
+        Blog blog = getById(id);
+        if (blog != null) {
+            hydrateAuthors(Collections.singletonList(blog));
+        }
+        return blog;
+    }
+
     /**
      * 点赞或取消点赞：所需数据结构的特点，① 存储多个；② 唯一；
-     * 先在 Redis 中查询以该笔记为键的 zset 是否存在当前用户的 id：
+     * 由 Lua 脚本原子地判断 Redis 中以该笔记为键的 zset 是否存在当前用户的 id：
      *    若不存在，说明当前用户未点赞该笔记，则执行点赞逻辑：
-     *      更新数据库该笔记的点赞数 +1
-     *      将当前用户 id 作为 value 插入 zset 的 key 中
+     *      将当前用户 id 作为 value 插入 zset 的 key 中，点赞数增量 +1
      *    若已存在，说明当前用户已点赞过该笔记，则执行取消点赞的逻辑：
-     *      更新数据库该笔记的点赞数 -1
-     *      移除笔记 key 对应的 value 中当前用户的 id
+     *      移除笔记 key 对应的 value 中当前用户的 id，点赞数增量 -1
+     * 点赞数增量累加在 blog:liked:pending 中，由定时任务批量写回数据库，避免热门笔记的行锁竞争
      * @param id
      * @return
      */
@@ -98,29 +442,102 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         // 1. 获取登录用户
         Long userId = UserHolder.getUser().getId();
 
-        // 2. 判断当前用户是否点赞过
-        String key = "blog:liked:" + id;
-        // zscore key member：查询 member 对应的 score，曲线救国实现判断当前用户是否已点赞
-        Double score = stringRedisTemplate.opsForZSet().score(key, userId.toString());
-        if (score == null){
-            // 3. 如果未点赞，可以点赞
-            // 3.1 数据库点赞数 +1
-            boolean isSuccess = update().setSql("liked = liked + 1").eq("id", id).update();
-            // 3.2 保存用户到 Redis 的 Zset 集合中：key 笔记 id，value userId。zadd key value score
-            if (isSuccess) { // 时间戳作为 score
-                stringRedisTemplate.opsForZSet().add(key, userId.toString(), System.currentTimeMillis());
+        // 2. 判断笔记是否存在（走笔记详情缓存）
+        if (queryBlogDetail(id) == null) {
+            return Result.fail("笔记不存在！");
+        }
+
+        // 3. 执行 Lua 脚本：切换点赞状态，累加点赞数增量，调整热门排行分数
+        stringRedisTemplate.execute(
+                BLOG_LIKE_SCRIPT,
+                Arrays.asList(BLOG_LIKED_KEY + id, BLOG_LIKED_PENDING_KEY, BLOG_HOT_KEY),
+                id.toString(), userId.toString(), String.valueOf(System.currentTimeMillis())
+        );
+
+        return Result.ok();
+    }
+
+    /**
+     * 定时把点赞数增量写回数据库：每篇笔记每个周期只执行一次 UPDATE。多个实例之间用分布式锁互斥
+     */
+    @Scheduled(fixedDelayString = "${hmdp.blog.like-flush-ms:5000}")
+    public void flushLikes() {
+        RLock lock = redissonClient.getLock(LOCK_BLOG_LIKE_FLUSH_KEY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            doFlushLikes();
+        } catch (Exception e) {
+            log.error("点赞数写回失败", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写回点赞数增量，调用方需持有 LOCK_BLOG_LIKE_FLUSH_KEY。
+     * 先把累加中的增量改名为一个写回批次，逐篇写回后再删除批次；中途失败或崩溃时批次保留，下次重新写回。
+     * 每篇笔记记录最后写回的批次号（tb_blog.like_batch），重新写回时已经写过的笔记不会重复累加
+     * @return 是否全部写回成功
+     */
+    private boolean doFlushLikes() {
+        // 最多两轮：先写完上次遗留的批次，再写本次的新增量
+        for (int round = 0; round < 2; round++) {
+            // 1. 取出一个批次（上次遗留的批次优先）
+            Long batch = stringRedisTemplate.execute(BLOG_LIKE_BATCH_SCRIPT,
+                    Arrays.asList(BLOG_LIKED_PENDING_KEY, BLOG_LIKED_FLUSHING_KEY, BLOG_LIKED_BATCH_KEY));
+            if (batch == null || batch == 0) {
+                return true;
             }
-        }else {
-            // 4. 如果已点赞
-            // 4.1 数据库点赞数 -1
-            boolean isSuccess = update().setSql("liked = liked - 1").eq("id", id).update();
-            // 4.2 把用户从 Redis 的 Zset 集合中移除
-            if (isSuccess) {
-                stringRedisTemplate.opsForZSet().remove(key, userId.toString());
+            Map<Object, Object> deltas = stringRedisTemplate.opsForHash().entries(BLOG_LIKED_FLUSHING_KEY);
+            List<Long> ids = new ArrayList<>(deltas.size());
+            for (Map.Entry<Object, Object> entry : deltas.entrySet()) {
+                String blogId = entry.getKey().toString();
+                long delta = Long.parseLong(entry.getValue().toString());
+                if ("_batch".equals(blogId) || delta == 0) {
+                    continue;
+                }
+                try {
+                    // 2. 写回数据库 update tb_blog set liked = greatest(liked + delta, 0), like_batch = ?
+                    //    where id = ? and like_batch < ?，批次号已经写过的笔记不再累加
+                    update()
+                            .setSql("liked = GREATEST(CAST(liked AS SIGNED) + " + delta + ", 0)")
+                            .set("like_batch", batch)
+                            .eq("id", Long.valueOf(blogId))
+                            .lt("like_batch", batch)
+                            .update();
+                } catch (Exception e) {
+                    // 保留批次，下次从头重新写回（已经写过的笔记会被跳过）
+                    log.error("笔记 {} 点赞数写回失败，批次 {} 保留到下次", blogId, batch, e);
+                    return false;
+                }
+                ids.add(Long.valueOf(blogId));
             }
+            // 3. 把点赞数写入已缓存的笔记详情。重新写回时被跳过的笔记也要写入，上次可能在这一步之前中断
+            patchCachedLikes(ids);
+            // 4. 全部写回后删除批次
+            stringRedisTemplate.delete(BLOG_LIKED_FLUSHING_KEY);
         }
+        return true;
+    }
 
-        return Result.ok();
+    /**
+     * 把笔记当前的点赞数和批次号写入已缓存的笔记详情，不重新加载整篇笔记：
+     * 每批笔记一次查询数据库，一次管道读写缓存；未缓存的笔记不处理
+     */
+    private void patchCachedLikes(List<Long> ids) {
+        for (List<Long> chunk : CollUtil.split(ids, BLOG_REBUILD_BATCH)) {
+            List<Blog> blogs = query().select("id", "liked", "like_batch").in("id", chunk).list();
+            Map<String, Map<String, Object>> patches = new HashMap<>(blogs.size());
+            for (Blog blog : blogs) {
+                Map<String, Object> fields = new HashMap<>(2);
+                fields.put("liked", blog.getLiked());
+                fields.put("likeBatch", blog.getLikeBatch());
+                patches.put(cacheClient.buildKey(CACHE_BLOG_KEY, blog.getId()), fields);
+            }
+            cacheClient.patchWithLogicalExpire(patches);
+        }
     }
 
     /**
@@ -140,16 +557,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         // TODO Stream 流够骚
         List<Long> ids = top5.stream().map(Long::valueOf).collect(Collectors.toList());
 
-        // 3. 根据用户 id 查询用户
-        // User -> UserDTO
-        // where id in (5, 1) order by field(id, 5, 1);
-        String idStr = StrUtil.join(",", ids);
-        List<UserDTO> userDTOS = userService.query()
-                .in("id", ids).last("order by field(id," + idStr + ")")
-                .list()
-                .stream()
-                .map(user -> BeanUtil.copyProperties(user, UserDTO.class))
-                .collect(Collectors.toList());
+        // 3. 根据用户 id 批量查询用户（走用户缓存），结果顺序与 ids 一致
+        List<UserDTO> userDTOS = new ArrayList<>(userService.queryUserDTOs(ids).values());
 
         // 4. 返回
         return Result.ok(userDTOS);
@@ -165,25 +574,191 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         if (!isSuccess) {
             return Result.fail("新增笔记失败！");
         }
-        // 查询笔记作者的所有粉丝，推送笔记 id 给所有粉丝 select * from tb_follow where follow_user_id = user_id
-        List<Follow> follows = followService.query().eq("follow_user_id", user.getId()).list();
-
-        // 推送笔记给所有粉丝
-        for (Follow follow : follows) {
-            // 获取粉丝 id
-            Long userId = follow.getUserId();
-            // 4.2 推送，将当前笔记的 id 保存到 Redis 中。粉丝的 id 为键，笔记 id 为值
-            String key = FEED_KEY + userId;
-            stringRedisTemplate.opsForZSet().add(key, blog.getId().toString(), System.currentTimeMillis());
+        // 发布前查询过这个 id 时缓存了空值，删除后详情才能查到新笔记
+        stringRedisTemplate.delete(cacheClient.buildKey(CACHE_BLOG_KEY, blog.getId()));
+        // 推送任务写入消息队列，由后台线程分批推送给粉丝，发布接口不再等待推送完成
+        // 同一篇笔记在所有粉丝收件箱中使用相同的时间戳
+        Map<String, String> job = new HashMap<>(4);
+        job.put("blogId", blog.getId().toString());
+        job.put("authorId", user.getId().toString());
+        job.put("time", String.valueOf(System.currentTimeMillis()));
+        try {
+            stringRedisTemplate.opsForStream().add(FEED_STREAM_KEY, job);
+        } catch (Exception e) {
+            // 推送任务没有入队，笔记不会出现在任何粉丝的关注动态中，也没有重试：删除笔记，由用户重新发布
+            log.error("笔记 {} 推送任务入队失败，撤销发布", blog.getId(), e);
+            removeById(blog.getId());
+            return Result.fail("发布失败，请稍后重试！");
+        }
+        try {
+            // 加入热门排行，并裁剪到 BLOG_HOT_MAX 篇
+            stringRedisTemplate.opsForZSet().add(BLOG_HOT_KEY, blog.getId().toString(), hotScore(0, null));
+            stringRedisTemplate.opsForZSet().removeRange(BLOG_HOT_KEY, 0, -BLOG_HOT_MAX - 1);
+        } catch (Exception e) {
+            // 下次重建热门排行时会重新计入，不影响发布结果
+            log.error("笔记 {} 加入热门排行失败", blog.getId(), e);
         }
         // 返回 id
         return Result.ok(blog.getId());
     }
 
+    private static final ExecutorService FEED_FANOUT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    @PostConstruct
+    private void init() {
+        FEED_FANOUT_EXECUTOR.submit(new FeedFanoutHandler());
+    }
+
     /**
-     * 动态分页查询收件箱中博主的推送
-     * @param max
-     * @param offset
+     * 消费 stream.feed 中的推送任务：分页读取粉丝，管道批量写入粉丝收件箱，完成后 ACK。
+     * 处理失败的任务留在 pending-list 中重试，已推送的进度记录在 feed:fanout:{blogId}，重试时不会从头开始
+     */
+    private class FeedFanoutHandler implements Runnable {
+
+        @Override
+        public void run() {
+            createGroup();
+            while (true) {
+                try {
+                    // 1. 获取消息队列中的推送任务 xreadgroup group g1 c1 count 1 block 2000 streams stream.feed >
+                    List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
+                            Consumer.from(FEED_STREAM_GROUP, "c1"),
+                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
+                            StreamOffset.create(FEED_STREAM_KEY, ReadOffset.lastConsumed())
+                    );
+                    // 2. 没有消息，继续下一次循环
+                    if (list == null || list.isEmpty()) {
+                        continue;
+                    }
+                    // 3. 推送并确认
+                    handleRecord(list.get(0));
+                } catch (Exception e) {
+                    log.error("处理笔记推送任务异常", e);
+                    handlePendingList();
+                }
+            }
+        }
+
+        private void handlePendingList() {
+            while (true) {
+                try {
+                    // 1. 获取 pending-list 中的推送任务 xreadgroup group g1 c1 count 1 streams stream.feed 0
+                    List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
+                            Consumer.from(FEED_STREAM_GROUP, "c1"),
+                            StreamReadOptions.empty().count(1),
+                            StreamOffset.create(FEED_STREAM_KEY, ReadOffset.from("0"))
+                    );
+                    // 2. pending-list 没有异常消息，结束循环
+                    if (list == null || list.isEmpty()) {
+                        break;
+                    }
+                    // 3. 从上次的进度继续推送并确认
+                    handleRecord(list.get(0));
+                } catch (Exception e) {
+                    log.error("处理 pending-list 笔记推送任务异常", e);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 创建消费者组（队列不存在时一并创建），已存在时忽略
+         */
+        private void createGroup() {
+            try {
+                stringRedisTemplate.opsForStream().createGroup(FEED_STREAM_KEY, ReadOffset.from("0"), FEED_STREAM_GROUP);
+            } catch (Exception e) {
+                // BUSYGROUP：消费者组已存在
+                log.debug("消费者组 {} 已存在", FEED_STREAM_GROUP);
+            }
+        }
+
+        private void handleRecord(MapRecord<String, Object, Object> record) {
+            Map<Object, Object> values = record.getValue();
+            fanout(Long.valueOf(values.get("blogId").toString()),
+                    Long.valueOf(values.get("authorId").toString()),
+                    Long.parseLong(values.get("time").toString()));
+            // ACK 后删除消息，已完成的任务不再占用内存
+            stringRedisTemplate.opsForStream().acknowledge(FEED_STREAM_KEY, FEED_STREAM_GROUP, record.getId());
+            stringRedisTemplate.opsForStream().delete(FEED_STREAM_KEY, record.getId());
+        }
+    }
+
+    /**
+     * 把笔记推送给作者的所有粉丝：按 tb_follow.id 分页读取粉丝，每批粉丝的 ZADD 通过管道一次发送。
+     * ZADD 是幂等的，任务重试时重复推送同一批粉丝也不会产生重复数据。
+     * 不存在的收件箱不再写入，由粉丝回来读取时重建，长期未活跃用户不占用内存。
+     * 粉丝数达到阈值的作者只写入发件箱，由粉丝读取时拉取（推拉结合）
+     * @param blogId 笔记id
+     * @param authorId 作者id
+     * @param time 发布时间戳，作为收件箱中的 score
+     */
+    private void fanout(Long blogId, Long authorId, long time) {
+        String member = blogId.toString();
+        // 1. 写入作者发件箱，只保留最近的 FEED_OUTBOX_MAX 篇
+        String outboxKey = FEED_OUTBOX_KEY + authorId;
+        stringRedisTemplate.opsForZSet().add(outboxKey, member, time);
+        stringRedisTemplate.opsForZSet().removeRange(outboxKey, 0, -FEED_OUTBOX_MAX - 1);
+
+        // 2. 大V 不推送。一旦成为大V 就不再移出，否则之前只在发件箱中的笔记会从粉丝的动态中消失
+        if (isBigAuthor(authorId)) {
+            return;
+        }
+
+        String progressKey = FEED_FANOUT_KEY + blogId;
+        // 3. 读取上次的推送进度
+        String progress = stringRedisTemplate.opsForValue().get(progressKey);
+        long lastId = progress == null ? 0L : Long.parseLong(progress);
+        while (true) {
+            // 4. 分页查询粉丝 select id, user_id from tb_follow where follow_user_id = ? and id > ? order by id limit ?
+            List<Follow> follows = followService.query()
+                    .select("id", "user_id")
+                    .eq("follow_user_id", authorId)
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("LIMIT " + FEED_FANOUT_BATCH)
+                    .list();
+            if (follows.isEmpty()) {
+                break;
+            }
+            lastId = follows.get(follows.size() - 1).getId();
+            // 5. 一次脚本调用写入这一批粉丝的收件箱（只写入已存在的收件箱，并裁剪长度），然后记录进度
+            List<String> keys = follows.stream().map(f -> FEED_KEY + f.getUserId()).collect(Collectors.toList());
+            stringRedisTemplate.execute(FEED_PUSH_SCRIPT, keys, member, String.valueOf(time), String.valueOf(inboxMaxSize));
+            stringRedisTemplate.opsForValue().set(progressKey, String.valueOf(lastId), FEED_FANOUT_TTL, TimeUnit.DAYS);
+            if (follows.size() < FEED_FANOUT_BATCH) {
+                break;
+            }
+        }
+        // 6. 推送完成，删除进度
+        stringRedisTemplate.delete(progressKey);
+    }
+
+    /**
+     * 判断作者是否为大V：已在 feed:big:authors 中，或粉丝数达到阈值（达到后加入集合）
+     */
+    private boolean isBigAuthor(Long authorId) {
+        String member = authorId.toString();
+        if (BooleanUtil.isTrue(stringRedisTemplate.opsForSet().isMember(FEED_BIG_AUTHORS_KEY, member))) {
+            return true;
+        }
+        // select count(*) from tb_follow where follow_user_id = ?，走 idx_follow_user_id 索引
+        Integer fans = followService.query().eq("follow_user_id", authorId).count();
+        if (fans < pushThreshold) {
+            return false;
+        }
+        stringRedisTemplate.opsForSet().add(FEED_BIG_AUTHORS_KEY, member);
+        return true;
+    }
+
+    /**
+     * 动态分页查询收件箱中博主的推送，并合并关注的大V 发件箱中的笔记（大V 的笔记不推送，读取时拉取）
+     * @param max 上一页最小的时间戳，第一页为当前时间
+     * @param offset 上一页中与最小时间戳相同的元素个数，本页需要跳过
      * @return
      */
     @Override
@@ -191,13 +766,12 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         // 1. 获取当前用户
         Long userId = UserHolder.getUser().getId();
 
-        // 2. 查询收件箱：zrevrangebyscore key max 0 limit offset count
-        String key = FEED_KEY + userId;
-        Set<ZSetOperations.TypedTuple<String>> typedTuples = stringRedisTemplate.opsForZSet()
-                .reverseRangeByScoreWithScores(key, 0, max, offset, 2);
+        // 2. 查询收件箱和关注的大V 的发件箱：zrevrangebyscore key max 0 limit 0 offset+count
+        // 合并后的前 offset + count 个元素，一定在各自来源的前 offset + count 个元素之中
+        List<ZSetOperations.TypedTuple<String>> typedTuples = queryFollowFeed(userId, max, offset, SystemConstants.FEED_PAGE_SIZE);
 
         // 3. 非空判断
-        if (typedTuples == null || typedTuples.isEmpty()) {
+        if (typedTuples.isEmpty()) {
             return Result.ok();
         }
 
@@ -218,17 +792,15 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
                 os = 1;
             }
         }
+        // 4.3 本页的元素时间戳都等于 max，下一页还需要跳过之前页中相同时间戳的元素
+        if (minTime == max) {
+            os += offset;
+        }
 
         // 5. 根据 id 查询 blog
-        String idStr = StrUtil.join(",", ids);
-        List<Blog> blogs = query().in("id", ids).last("order by field(id," + idStr + ")").list();
-        for (Blog blog : blogs) {
-            // 5.1 查询 blog 有关的用户
-            queryBlogUser(blog);
-
-            // 5.2 查询是否被点赞
-            isBlogLiked(blog);
-        }
+        List<Blog> blogs = listBlogsByIds(ids);
+        // 5.1 批量查询 blog 有关的用户和是否被点赞
+        hydrateBlogs(blogs, userId);
 
         // 6. 封装并返回
         ScrollResult r = new ScrollResult();
@@ -239,35 +811,268 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     }
 
     /**
-     * 根据 blog 查询用户
-     * @param blog
+     * 按页码查询用户的笔记，最新在前；不需要总数，不执行 COUNT。
+     * 与其他列表接口一样批量填充作者信息，并叠加尚未写回数据库的点赞数
+     * @param userId 用户id
+     * @param current 页码
+     * @return
      */
-    private void queryBlogUser(Blog blog) {
-        Long userId = blog.getUserId();
-        User user = userService.getById(userId);
-        blog.setName(user.getNickName());
-        blog.setIcon(user.getIcon());
+    @Override
+    public Result queryBlogOfUser(Long userId, Integer current) {
+        Page<Blog> page = query()
+                .eq("user_id", userId)
+                .orderByDesc("create_time", "id")
+                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE, false));
+        List<Blog> records = page.getRecords();
+        hydrateBlogs(records, currentUserId());
+        return Result.ok(records);
     }
 
     /**
-     * 从 Redis 中查询该笔记是否被点赞，如果被点赞了，需要更新 Blog 中的 isLike 属性为 true（已点赞）
-     * @param blog
+     * 按 (create_time, id) 降序滚动查询用户的笔记：下一页从上一页最后一条之后继续，
+     * 走 idx_user_create_time 索引，不执行 COUNT，翻页深度不影响查询速度
+     * @param userId 用户id
+     * @param lastTime 上一页最后一条的发布时间（毫秒时间戳），第一页不传
+     * @param lastId 上一页最后一条的 id，第一页不传
+     * @return
      */
-    private void isBlogLiked(Blog blog) {
-        // 1. 获取登录用户
-        UserDTO user = UserHolder.getUser();
-        if (user == null){
-            // 用户未登录，如浏览首页面不需要查询是否点赞
+    @Override
+    public Result queryBlogOfUserScroll(Long userId, Long lastTime, Long lastId) {
+        // 1. select * from tb_blog where user_id = ? and (create_time < ? or (create_time = ? and id < ?))
+        //    order by create_time desc, id desc limit size
+        int size = SystemConstants.MAX_PAGE_SIZE;
+        QueryChainWrapper<Blog> wrapper = query().eq("user_id", userId);
+        if (lastTime != null && lastId != null) {
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(lastTime), ZoneId.systemDefault());
+            wrapper.and(w -> w.lt("create_time", time)
+                    .or(w2 -> w2.eq("create_time", time).lt("id", lastId)));
+        }
+        List<Blog> blogs = wrapper.orderByDesc("create_time", "id").last("LIMIT " + size).list();
+
+        // 2. 批量查询用户和点赞状态
+        hydrateBlogs(blogs, currentUserId());
+
+        // 3. 封装并返回，本页不满说明没有下一页，不返回游标
+        ScrollResult r = new ScrollResult();
+        r.setList(blogs);
+        if (blogs.size() == size) {
+            Blog last = blogs.get(size - 1);
+            r.setMinTime(last.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            r.setLastId(last.getId());
+        }
+        return Result.ok(r);
+    }
+
+    /**
+     * 合并收件箱与大V 发件箱，按时间戳降序（相同时间戳按 blogId 字典序降序，与 ZREVRANGEBYSCORE 一致），跳过 offset 个后取 count 个。
+     * 收件箱不存在时（新用户或长期未活跃已过期）先从关注作者的发件箱重建
+     */
+    private List<ZSetOperations.TypedTuple<String>> queryFollowFeed(Long userId, long max, int offset, int count) {
+        // 1. 当前用户关注的大V：sinter follows:{userId} feed:big:authors
+        Set<String> bigAuthors = stringRedisTemplate.opsForSet().intersect(COMMON_FOLLOW_KEY + userId, FEED_BIG_AUTHORS_KEY);
+        String inboxKey = FEED_KEY + userId;
+        List<String> keys = new ArrayList<>();
+        keys.add(inboxKey);
+        if (bigAuthors != null) {
+            bigAuthors.forEach(authorId -> keys.add(FEED_OUTBOX_KEY + authorId));
+        }
+
+        // 2. 管道查询各个来源，同时为收件箱续期
+        long limit = offset + count;
+        List<Object> results = readFeedSources(inboxKey, keys, max, limit);
+        // 3. 续期失败说明收件箱不存在，重建后重新查询
+        if (!Boolean.TRUE.equals(results.get(0))) {
+            rebuildInbox(userId);
+            results = readFeedSources(inboxKey, keys, max, limit);
+        }
+
+        // 4. 合并去重（作者成为大V 之前的笔记可能同时在收件箱和发件箱中）
+        return mergeFeed(results.subList(1, results.size())).stream()
+                .skip(offset)
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 管道执行：expire 收件箱，以及各个来源的 zrevrangebyscore key max 0 limit 0 limit
+     * @return 第一个元素是 expire 的结果，之后依次是各个来源的查询结果
+     */
+    private List<Object> readFeedSources(String inboxKey, List<String> keys, long max, long limit) {
+        return stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                operations.expire(inboxKey, inboxTtlDays, TimeUnit.DAYS);
+                for (String key : keys) {
+                    operations.opsForZSet().reverseRangeByScoreWithScores(key, 0, max, 0, limit);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 重建收件箱：合并关注的普通作者发件箱中最近的笔记（大V 的笔记读取时拉取，不写入收件箱），
+     * 保留最近的 inboxMaxSize 篇，并写入占位元素，没有任何笔记的收件箱也不会反复重建
+     */
+    private void rebuildInbox(Long userId) {
+        // 1. 关注的普通作者：sdiff follows:{userId} feed:big:authors
+        Set<String> authors = stringRedisTemplate.opsForSet().difference(COMMON_FOLLOW_KEY + userId, FEED_BIG_AUTHORS_KEY);
+
+        // 2. 管道读取各作者发件箱中最近的笔记
+        List<Object> results = Collections.emptyList();
+        if (authors != null && !authors.isEmpty()) {
+            results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    for (String authorId : authors) {
+                        operations.opsForZSet().reverseRangeWithScores(FEED_OUTBOX_KEY + authorId, 0, inboxMaxSize - 1);
+                    }
+                    return null;
+                }
+            });
+        }
+        Set<ZSetOperations.TypedTuple<String>> tuples = mergeFeed(results).stream()
+                .limit(inboxMaxSize)
+                .collect(Collectors.toSet());
+        tuples.add(new DefaultTypedTuple<>(FEED_INBOX_PLACEHOLDER, Double.POSITIVE_INFINITY));
+
+        // 3. 事务写入收件箱并设置过期时间
+        String key = FEED_KEY + userId;
+        stringRedisTemplate.execute(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                operations.multi();
+                operations.delete(key);
+                operations.opsForZSet().add(key, tuples);
+                operations.expire(key, inboxTtlDays, TimeUnit.DAYS);
+                return operations.exec();
+            }
+        });
+    }
+
+    /**
+     * 合并多个 zset 的查询结果，同一篇笔记保留较大的时间戳，按时间戳降序、blogId 字典序降序排列
+     */
+    @SuppressWarnings("unchecked")
+    private List<ZSetOperations.TypedTuple<String>> mergeFeed(List<Object> results) {
+        Map<String, Double> merged = new HashMap<>();
+        for (Object result : results) {
+            if (result == null) {
+                continue;
+            }
+            for (ZSetOperations.TypedTuple<String> tuple : (Set<ZSetOperations.TypedTuple<String>>) result) {
+                merged.merge(tuple.getValue(), tuple.getScore(), Math::max);
+            }
+        }
+        return merged.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.<String, Double>comparingByKey().reversed()))
+                .map(e -> new DefaultTypedTuple<>(e.getKey(), e.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 查询店铺点赞最多的笔记。可能在其他线程中执行（如店铺详情的并行查询），
+     * 拿不到 UserHolder 中的登录用户，因此由调用方显式传入
+     * @param shopId 店铺id
+     * @param count 数量
+     * @param userId 当前用户id，未登录为 null
+     * @return
+     */
+    @Override
+    public List<Blog> queryTopBlogsOfShop(Long shopId, int count, Long userId) {
+        List<Blog> blogs = query()
+                .eq("shop_id", shopId)
+                .orderByDesc("liked")
+                .last("LIMIT " + count)
+                .list();
+        hydrateBlogs(blogs, userId);
+        return blogs;
+    }
+
+    /**
+     * 批量填充笔记的作者信息、点赞数和当前用户的点赞状态，所有笔记列表接口共用：
+     * 作者一次批量缓存查询，点赞数增量和点赞状态一次管道查询，一页笔记只需要两次 Redis 往返
+     * @param blogs 笔记
+     * @param userId 当前用户id，未登录为 null（不查询点赞状态）
+     */
+    private void hydrateBlogs(List<Blog> blogs, Long userId) {
+        if (blogs.isEmpty()) {
             return;
         }
+        hydrateAuthors(blogs);
+        overlayLikes(blogs, userId);
+    }
+
+    /**
+     * 批量查询作者，填充昵称和头像
+     */
+    private void hydrateAuthors(List<Blog> blogs) {
+        Set<Long> authorIds = blogs.stream().map(Blog::getUserId).collect(Collectors.toSet());
+        Map<Long, UserDTO> users = userService.queryUserDTOs(authorIds);
+        for (Blog blog : blogs) {
+            UserDTO user = users.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        }
+    }
+
+    /**
+     * 叠加尚未写回数据库的点赞数，并查询当前用户的点赞状态
+     * @param userId 当前用户id，未登录为 null（不查询点赞状态）
+     */
+    private void overlayLikes(List<Blog> blogs, Long userId) {
+        // 1. 管道查询尚未写回数据库的点赞数增量 hmget blog:liked:pending id...，
+        //    正在写回的批次中的增量 hmget blog:liked:flushing id... _batch，
+        //    以及当前用户是否点赞过每篇笔记 zscore blog:liked:{id} userId（用户未登录，如浏览首页面不需要查询是否点赞）
+        List<Object> blogIds = blogs.stream().map(blog -> blog.getId().toString()).collect(Collectors.toList());
+        List<Object> flushingFields = new ArrayList<>(blogIds);
+        flushingFields.add("_batch");
+        String member = userId == null ? null : userId.toString();
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                operations.opsForHash().multiGet(BLOG_LIKED_PENDING_KEY, blogIds);
+                operations.opsForHash().multiGet(BLOG_LIKED_FLUSHING_KEY, flushingFields);
+                if (member != null) {
+                    for (Blog blog : blogs) {
+                        operations.opsForZSet().score(BLOG_LIKED_KEY + blog.getId(), member);
+                    }
+                }
+                return null;
+            }
+        });
 
-        Long userId = user.getId();
+        // 2. 点赞数 = 数据库中的点赞数 + 待写回的增量 + 正在写回、但还没有写到这篇笔记的增量
+        List<?> deltas = (List<?>) results.get(0);
+        List<?> flushing = (List<?>) results.get(1);
+        Object batchValue = flushing.get(blogs.size());
+        long batch = batchValue == null ? 0 : Long.parseLong(batchValue.toString());
+        for (int i = 0; i < blogs.size(); i++) {
+            Blog blog = blogs.get(i);
+            long delta = deltas.get(i) == null ? 0 : Long.parseLong(deltas.get(i).toString());
+            // 没有查询 like_batch 时无法判断，按未写回处理
+            if (flushing.get(i) != null && (blog.getLikeBatch() == null || blog.getLikeBatch() < batch)) {
+                delta += Long.parseLong(flushing.get(i).toString());
+            }
+            if (delta != 0) {
+                long liked = (blog.getLiked() == null ? 0 : blog.getLiked()) + delta;
+                blog.setLiked((int) Math.max(liked, 0));
+            }
+            if (member != null) {
+                blog.setIsLike(results.get(i + 2) != null);
+            }
+        }
+    }
 
-        // 2. 判断当前用户是否点赞过
-        String key = "blog:liked:" + blog.getId();
-        // 判断 Redis 的 set 中是否存在该 key
-        Double score = stringRedisTemplate.opsForZSet().score(key, userId.toString());
-        // TODO 够骚的写法
-        blog.setIsLike(score != null);
+    private static Long currentUserId() {
+        UserDTO user = UserHolder.getUser();
+        return user == null ? null : user.getId();
     }
 }
@@ -0,0 +1,294 @@
+package com.hmdp.service.impl;
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.Result;
+import com.hmdp.service.IImageService;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.hmdp.utils.RedisConstants.LOCK_UPLOAD_KEY;
+import static com.hmdp.utils.RedisConstants.UPLOAD_REF_KEY;
+
+/**
+ * @Description: 笔记图片的上传与删除。文件以内容的 SHA-256 命名（/blogs/{h1}/{h2}/{sha256}.{后缀}），
+ * 后缀由文件头识别，只接受图片格式；相同内容的图片只保存一份，Redis 中按上传者记录引用次数（upload:ref:{sha256}），
+ * 用户只能删除自己上传的引用，所有引用都删除后才删除文件；缩略图（{sha256}_{宽度}.{后缀}）在有界线程池中异步生成
+ */
+@Slf4j
+@Service
+public class ImageServiceImpl implements IImageService {
+
+    // 上传时返回的相对路径格式：/blogs/{h1}/{h2}/{sha256}.{后缀}，h1、h2 为哈希的前两个字符
+    private static final Pattern NAME_PATTERN = Pattern.compile(
+            "/blogs/([0-9a-f])/([0-9a-f])/([0-9a-f]{64})\\.(jpg|png|gif|webp|bmp)");
+    // 识别文件格式需要读取的文件头长度
+    private static final int HEADER_SIZE = 12;
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    // 缩略图生成线程池：线程数和队列长度都有上限，上传高峰时丢弃缩略图任务，不影响上传本身
+    private static final ThreadPoolExecutor THUMBNAIL_EXECUTOR = new ThreadPoolExecutor(
+            2, 2, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(200));
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Value("${hmdp.upload.dir:${user.home}/hmdp/imgs}")
+    private String uploadDir;
+
+    @Value("${hmdp.upload.thumbnail-widths:200,600}")
+    private int[] thumbnailWidths;
+
+    private Path root;
+
+    @PostConstruct
+    private void init() throws IOException {
+        root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        Files.createDirectories(root.resolve("tmp"));
+        log.info("图片存储目录：{}", root);
+    }
+
+    @Override
+    public Result uploadBlogImage(MultipartFile image, Long userId) {
+        Path tmp = root.resolve("tmp").resolve(UUID.randomUUID().toString());
+        try {
+            // 1. 边写入临时文件边计算 SHA-256，只读取一遍上传内容
+            String hash = copyAndHash(image, tmp);
+
+            // 2. 按文件头识别格式，不信任客户端提供的文件名，非图片内容直接拒绝
+            String suffix = detectFormat(tmp);
+            if (suffix == null) {
+                return Result.fail("不支持的文件类型");
+            }
+            String fileName = StrUtil.format("/blogs/{}/{}/{}.{}",
+                    hash.charAt(0), hash.charAt(1), hash, suffix);
+            Path target = root.resolve(fileName.substring(1));
+
+            // 3. 同一内容的上传和删除互斥，避免引用计数归零删除文件时另一个请求正好复用了该文件
+            RLock lock = redissonClient.getLock(LOCK_UPLOAD_KEY + hash);
+            lock.lock();
+            boolean created = false;
+            try {
+                if (!Files.exists(target)) {
+                    // 3.1 新内容，移动到正式目录
+                    Files.createDirectories(target.getParent());
+                    moveAtomically(tmp, target);
+                    created = true;
+                }
+                // 3.2 文件就位后再记录引用，移动失败时引用计数不会多出来
+                stringRedisTemplate.opsForHash().increment(UPLOAD_REF_KEY + hash, userId.toString(), 1);
+            } finally {
+                lock.unlock();
+            }
+
+            // 4. 新内容异步生成缩略图，重复内容直接复用已有文件
+            if (created) {
+                submitThumbnails(target, hash, suffix);
+            }
+            log.debug("文件上传成功，{}，{}", fileName, created ? "新文件" : "内容重复，复用已有文件");
+            return Result.ok(fileName);
+        } catch (IOException e) {
+            throw new RuntimeException("文件上传失败", e);
+        } finally {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException e) {
+                log.warn("删除临时文件失败 {}", tmp, e);
+            }
+        }
+    }
+
+    @Override
+    public Result deleteBlogImage(String filename, Long userId) {
+        // 1. 校验路径：只接受上传时返回的格式，路径由哈希和后缀重新拼接，不使用客户端传入的原文
+        Matcher matcher = filename == null ? null : NAME_PATTERN.matcher(filename);
+        if (matcher == null || !matcher.matches()) {
+            return Result.fail("错误的文件名称");
+        }
+        String hash = matcher.group(3);
+        String suffix = matcher.group(4);
+        if (hash.charAt(0) != matcher.group(1).charAt(0) || hash.charAt(1) != matcher.group(2).charAt(0)) {
+            return Result.fail("错误的文件名称");
+        }
+        Path target = root.resolve(StrUtil.format("blogs/{}/{}/{}.{}", hash.charAt(0), hash.charAt(1), hash, suffix));
+
+        // 2. 扣减当前用户的引用，所有用户的引用都删除后删除文件和缩略图
+        String refKey = UPLOAD_REF_KEY + hash;
+        String owner = userId.toString();
+        RLock lock = redissonClient.getLock(LOCK_UPLOAD_KEY + hash);
+        lock.lock();
+        try {
+            Object refs = stringRedisTemplate.opsForHash().get(refKey, owner);
+            if (refs == null || Long.parseLong(refs.toString()) <= 0) {
+                return Result.fail("只能删除自己上传的图片");
+            }
+            if (stringRedisTemplate.opsForHash().increment(refKey, owner, -1) <= 0) {
+                stringRedisTemplate.opsForHash().delete(refKey, owner);
+            }
+            Long remaining = stringRedisTemplate.opsForHash().size(refKey);
+            if (remaining != null && remaining > 0) {
+                return Result.ok();
+            }
+            Files.deleteIfExists(target);
+            for (int width : thumbnailWidths) {
+                Files.deleteIfExists(target.resolveSibling(thumbnailName(hash, width, suffix)));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("文件删除失败", e);
+        } finally {
+            lock.unlock();
+        }
+        return Result.ok();
+    }
+
+    /**
+     * 根据文件头识别图片格式
+     * @return 对应的后缀，不是支持的图片格式时返回 null
+     */
+    private static String detectFormat(Path file) throws IOException {
+        byte[] h = new byte[HEADER_SIZE];
+        int n;
+        try (InputStream in = Files.newInputStream(file)) {
+            n = in.read(h);
+        }
+        if (n >= 3 && (h[0] & 0xFF) == 0xFF && (h[1] & 0xFF) == 0xD8 && (h[2] & 0xFF) == 0xFF) {
+            return "jpg";
+        }
+        if (n >= 8 && (h[0] & 0xFF) == 0x89 && h[1] == 'P' && h[2] == 'N' && h[3] == 'G'
+                && h[4] == 0x0D && h[5] == 0x0A && h[6] == 0x1A && h[7] == 0x0A) {
+            return "png";
+        }
+        if (n >= 6 && h[0] == 'G' && h[1] == 'I' && h[2] == 'F' && h[3] == '8' && (h[4] == '7' || h[4] == '9') && h[5] == 'a') {
+            return "gif";
+        }
+        if (n >= 12 && h[0] == 'R' && h[1] == 'I' && h[2] == 'F' && h[3] == 'F'
+                && h[8] == 'W' && h[9] == 'E' && h[10] == 'B' && h[11] == 'P') {
+            return "webp";
+        }
+        if (n >= 2 && h[0] == 'B' && h[1] == 'M') {
+            return "bmp";
+        }
+        return null;
+    }
+
+    private static String copyAndHash(MultipartFile image, Path tmp) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(image.getInputStream(), digest);
+             OutputStream out = Files.newOutputStream(tmp)) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    /**
+     * 移动到正式目录：优先原子移动，其他请求不会读到写了一半的文件
+     */
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void submitThumbnails(Path original, String hash, String suffix) {
+        // ImageIO 不能写出的格式（如 webp）不生成缩略图
+        if (!Arrays.asList(ImageIO.getWriterFileSuffixes()).contains(suffix)) {
+            return;
+        }
+        try {
+            THUMBNAIL_EXECUTOR.execute(() -> createThumbnails(original, hash, suffix));
+        } catch (RejectedExecutionException e) {
+            log.warn("缩略图队列已满，跳过 {}", original.getFileName());
+        }
+    }
+
+    /**
+     * 按配置的宽度等比缩放，原图不超过该宽度时不生成
+     */
+    private void createThumbnails(Path original, String hash, String suffix) {
+        try {
+            BufferedImage src = ImageIO.read(original.toFile());
+            if (src == null) {
+                return;
+            }
+            for (int width : thumbnailWidths) {
+                if (src.getWidth() <= width) {
+                    continue;
+                }
+                int height = Math.max(1, (int) Math.round((double) src.getHeight() * width / src.getWidth()));
+                int type = "png".equals(suffix) || "gif".equals(suffix)
+                        ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+                BufferedImage dest = new BufferedImage(width, height, type);
+                Graphics2D g = dest.createGraphics();
+                try {
+                    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    g.drawImage(src, 0, 0, width, height, null);
+                } finally {
+                    g.dispose();
+                }
+                Path target = original.resolveSibling(thumbnailName(hash, width, suffix));
+                Path tmp = root.resolve("tmp").resolve(UUID.randomUUID().toString());
+                try {
+                    ImageIO.write(dest, suffix, tmp.toFile());
+                    // 与删除互斥：生成期间所有引用都被删除时，原图和已有的缩略图已经删掉，不能再移入，否则无人清理
+                    RLock lock = redissonClient.getLock(LOCK_UPLOAD_KEY + hash);
+                    lock.lock();
+                    try {
+                        if (!Files.exists(original)) {
+                            return;
+                        }
+                        moveAtomically(tmp, target);
+                    } finally {
+                        lock.unlock();
+                    }
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        } catch (Exception e) {
+            log.error("生成缩略图失败 {}", original.getFileName(), e);
+        }
+    }
+
+    private static String thumbnailName(String hash, int width, String suffix) {
+        return hash + "_" + width + "." + suffix;
+    }
+}
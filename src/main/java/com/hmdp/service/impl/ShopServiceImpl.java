@@ -5,34 +5,62 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.hmdp.dto.CursorResult;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopDetailDTO;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
 import com.hmdp.entity.Shop;
 import com.hmdp.entity.ShopType;
+import com.hmdp.entity.Voucher;
 import com.hmdp.mapper.ShopMapper;
+import com.hmdp.service.IBlogService;
 import com.hmdp.service.IShopService;
+import com.hmdp.service.IShopTypeService;
+import com.hmdp.service.IVoucherService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CursorUtils;
+import com.hmdp.utils.GeoHit;
+import com.hmdp.utils.GeoTile;
+import com.hmdp.utils.GeoUtils;
 import com.hmdp.utils.RedisData;
+import com.hmdp.utils.ShopGeoIndex;
+import com.hmdp.utils.ShopNameIndex;
+import com.hmdp.utils.ShopOpenHoursIndex;
 import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.geo.Distance;
 import org.springframework.data.geo.GeoResult;
 import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
 import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.domain.geo.GeoReference;
+import org.springframework.data.redis.domain.geo.GeoShape;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 
+@Slf4j
 @Service
 public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IShopService {
 
@@ -42,10 +70,57 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     @Resource
     private CacheClient cacheClient;
 
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private ShopGeoIndex shopGeoIndex;
+
+    @Resource
+    private ShopNameIndex shopNameIndex;
+
+    @Resource
+    private ShopOpenHoursIndex shopOpenHoursIndex;
+
+    @Resource
+    private IShopTypeService shopTypeService;
+
+    @Resource
+    private IVoucherService voucherService;
+
+    @Resource
+    private IBlogService blogService;
+
+    // 店铺详情页各部分的超时时间，超时的部分降级为空
+    @Value("${hmdp.shop.detail.timeout-ms:300}")
+    private long detailTimeoutMs;
+
+    // 店铺详情页并行查询的线程池：有界队列，队列满时直接降级，不阻塞请求线程
+    private static final ThreadPoolExecutor SHOP_DETAIL_EXECUTOR = new ThreadPoolExecutor(
+            16, 16, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256));
+
+    // 营业时间索引是否正在后台构建，避免并发请求重复提交全表加载
+    private final AtomicBoolean openHoursLoading = new AtomicBoolean();
+
+    // 是否启用附近查询的瓦片缓存（本地空间索引可用时不使用）
+    @Value("${hmdp.shop.geo-tile.enabled:true}")
+    private boolean geoTileEnabled;
+
+    // 瓦片查询半径的余量，以及校验覆盖范围时的余量（Redis GEO 存储的坐标有亚米级误差）
+    private static final double GEO_TILE_PADDING = 10;
+    private static final double GEO_TILE_MARGIN = 1;
+
+    // 附近查询游标的来源：Redis（瓦片缓存与 GEOSEARCH，按 Redis 中的坐标计算距离）或本地空间索引（按数据库中的坐标计算距离）。
+    // 两者的距离有亚米级差别，翻页时必须使用生成游标的同一来源
+    private static final int GEO_SOURCE_REDIS = 0;
+    private static final int GEO_SOURCE_LOCAL = 1;
+
     @Override
     public Result queryById(Long id) {
-        // 缓存穿透：利用封装的工具类
-         Shop shop = cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        // 缓存穿透：利用封装的工具类，以 Hash 结构缓存，更新时只需修改变化的字段
+        Shop shop = cacheClient.queryHashWithPassThrough(CACHE_SHOP_HASH_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+
+//        Shop shop = cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
 
 //        Shop shop = cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY, id, Shop.class, this::getById, 20L, TimeUnit.SECONDS);
 
@@ -285,6 +360,120 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         stringRedisTemplate.delete(key);
     }
 
+    /**
+     * 店铺详情页：并行查询店铺、优惠券（实时库存）和热门笔记，一次请求代替多次调用。
+     * 每个部分单独计时，优惠券和笔记超时或失败时降级为空列表，并在 missing 中标出；店铺本身查询失败则返回错误
+     * @param id 店铺id
+     * @return ShopDetailDTO
+     */
+    @Override
+    public Result queryShopDetail(Long id) {
+        // 1. 登录用户保存在 ThreadLocal 中，子线程拿不到，提前取出
+        UserDTO user = UserHolder.getUser();
+        Long userId = user == null ? null : user.getId();
+
+        // 2. 并行提交三个查询
+        long begin = System.currentTimeMillis();
+        Future<Shop> shopFuture = submitDetailPart(() -> cacheClient.queryHashWithPassThrough(
+                CACHE_SHOP_HASH_KEY, id, Shop.class, this::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES));
+        Future<List<Voucher>> voucherFuture = submitDetailPart(
+                () -> voucherService.queryVoucherOfShopWithStock(id));
+        Future<List<Blog>> blogFuture = submitDetailPart(
+                () -> blogService.queryTopBlogsOfShop(id, SystemConstants.SHOP_DETAIL_BLOG_SIZE, userId));
+
+        // 3. 店铺是必需的部分
+        ShopDetailDTO detail = new ShopDetailDTO();
+        List<String> missing = new ArrayList<>(2);
+        Shop shop;
+        try {
+            shop = awaitDetailPart(shopFuture, begin);
+        } catch (Exception e) {
+            log.warn("店铺详情查询失败，shopId={}", id, e);
+            cancelDetailPart(voucherFuture);
+            cancelDetailPart(blogFuture);
+            return Result.fail("店铺信息查询失败，请稍后重试");
+        }
+        if (shop == null) {
+            cancelDetailPart(voucherFuture);
+            cancelDetailPart(blogFuture);
+            return Result.fail("店铺不存在！");
+        }
+        detail.setShop(shop);
+
+        // 4. 优惠券和笔记超时或失败时降级为空
+        try {
+            detail.setVouchers(awaitDetailPart(voucherFuture, begin));
+        } catch (Exception e) {
+            log.warn("店铺详情的优惠券查询失败，降级为空，shopId={}", id, e);
+            detail.setVouchers(Collections.emptyList());
+            missing.add("vouchers");
+        }
+        try {
+            detail.setBlogs(awaitDetailPart(blogFuture, begin));
+        } catch (Exception e) {
+            log.warn("店铺详情的笔记查询失败，降级为空，shopId={}", id, e);
+            detail.setBlogs(Collections.emptyList());
+            missing.add("blogs");
+        }
+        detail.setMissing(missing);
+        return Result.ok(detail);
+    }
+
+    /**
+     * 提交到详情线程池；线程池已满时返回失败的 future，由调用方按超时一样降级。
+     * 使用 submit 返回的 FutureTask 而不是 CompletableFuture：前者 cancel(true) 会中断执行中的线程，
+     * 超时的部分不会继续占用线程；还在队列中的任务被取消后也不会再执行
+     */
+    private <T> Future<T> submitDetailPart(Callable<T> task) {
+        try {
+            return SHOP_DETAIL_EXECUTOR.submit(task);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * 等待某个部分完成：每个部分都从请求开始计时，最多等待 detailTimeoutMs，
+     * 所以整个请求的耗时不超过一个超时时间。超时后取消任务并中断执行线程
+     */
+    private <T> T awaitDetailPart(Future<T> future, long begin)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long remaining = Math.max(0, begin + detailTimeoutMs - System.currentTimeMillis());
+        try {
+            return future.get(remaining, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancelDetailPart(future);
+            throw e;
+        }
+    }
+
+    /**
+     * 取消某个部分：执行中的中断线程，还在队列中的直接移出，释放队列位置
+     */
+    private static void cancelDetailPart(Future<?> future) {
+        future.cancel(true);
+        if (future instanceof Runnable) {
+            SHOP_DETAIL_EXECUTOR.remove((Runnable) future);
+        }
+    }
+
+    @Override
+    public Result saveShop(Shop shop) {
+        // 1. 写入数据库
+        save(shop);
+        // 2. 写入 GEO 数据和本地空间索引
+        syncShopLocation(null, shop);
+        // 3. 写入名称索引和营业时间索引
+        if (shopNameIndex.isEnabled()) {
+            shopNameIndex.put(shop);
+        }
+        shopOpenHoursIndex.put(shop);
+        // 4. 返回店铺id
+        return Result.ok(shop.getId());
+    }
+
     @Override
     @Transactional
     public Result update(Shop shop) {
@@ -292,74 +481,888 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         if (id == null) {
             return Result.fail("店铺id不能为空");
         }
-        // 1. 更新数据可
-        updateById(shop);
+        // 1. 类型或坐标变化时，先查出原来的位置，用于维护 GEO 数据
+        boolean locationChanged = shop.getTypeId() != null || shop.getX() != null || shop.getY() != null;
+        Shop old = locationChanged ? query().select("id", "type_id", "x", "y").eq("id", id).one() : null;
 
-        // 2. 删除缓存
-        stringRedisTemplate.delete(CACHE_SHOP_KEY + id);
+        // 2. 更新数据库
+        shop.setUpdateTime(LocalDateTime.now());
+        if (!updateById(shop)) {
+            return Result.fail("店铺不存在！");
+        }
+
+        // 3. 按字段更新缓存：只覆盖本次修改的字段（如 score、sold），不再删除整条缓存
+        // 缓存不存在时什么也不做，下次查询时再从数据库加载
+        cacheClient.updateHashFields(cacheClient.buildKey(CACHE_SHOP_HASH_KEY, id), shop);
+
+        // 4. 类型或坐标变化时，同步 GEO 数据（包括在类型集合之间移动）和本地空间索引
+        if (old != null) {
+            Shop current = new Shop()
+                    .setId(id)
+                    .setTypeId(shop.getTypeId() != null ? shop.getTypeId() : old.getTypeId())
+                    .setX(shop.getX() != null ? shop.getX() : old.getX())
+                    .setY(shop.getY() != null ? shop.getY() : old.getY());
+            syncShopLocation(old, current);
+        }
+
+        // 5. 名称、商圈、类型或营业时间变化时，更新名称索引和营业时间索引
+        boolean nameChanged = shopNameIndex.isEnabled() && (shop.getName() != null || shop.getArea() != null);
+        boolean hoursChanged = shop.getOpenHours() != null || shop.getTypeId() != null;
+        if (nameChanged || hoursChanged) {
+            Shop current = query().select("id", "type_id", "name", "area", "open_hours").eq("id", id).one();
+            if (nameChanged) {
+                shopNameIndex.put(current);
+            }
+            if (hoursChanged) {
+                shopOpenHoursIndex.put(current);
+            }
+        }
+
+        return Result.ok();
+    }
 
+    @Override
+    public Result deleteShop(Long id) {
+        // 1. 删除数据库记录
+        Shop old = query().select("id", "type_id", "x", "y").eq("id", id).one();
+        if (old == null || !removeById(id)) {
+            return Result.fail("店铺不存在！");
+        }
+        // 2. 删除缓存
+        stringRedisTemplate.delete(cacheClient.buildKey(CACHE_SHOP_HASH_KEY, id));
+        // 3. 从 GEO 数据和本地空间索引中移除
+        syncShopLocation(old, null);
+        // 4. 从名称索引和营业时间索引中移除
+        shopNameIndex.remove(id);
+        shopOpenHoursIndex.remove(id);
         return Result.ok();
     }
 
+    /**
+     * 从数据库全量构建店铺名称索引：按 id 分批读取，只查询 id、name、area
+     * @return 索引的店铺数量
+     */
     @Override
-    public Result queryShopByType(Integer typeId, Integer current, Double x, Double y) {
+    public int rebuildShopNameIndex() {
+        if (!shopNameIndex.isEnabled()) {
+            return 0;
+        }
+        List<Shop> all = listAllShops("id", "name", "area");
+        shopNameIndex.load(all);
+        return all.size();
+    }
+
+    /**
+     * 从数据库全量构建营业时间索引：按 id 分批读取，只查询 id、type_id、open_hours，营业时间在这里解析一次
+     * @return 索引的店铺数量
+     */
+    @Override
+    public synchronized int rebuildShopOpenHours() {
+        List<Shop> all = listAllShops("id", "type_id", "open_hours");
+        shopOpenHoursIndex.load(all);
+        return all.size();
+    }
+
+    /**
+     * 按 id 游标分批读取全部店铺的指定列，避免深分页
+     */
+    private List<Shop> listAllShops(String... columns) {
+        List<Shop> all = new ArrayList<>();
+        long lastId = 0;
+        while (true) {
+            List<Shop> chunk = query().select(columns)
+                    .gt("id", lastId).orderByAsc("id")
+                    .last("LIMIT " + SHOP_REBUILD_BATCH).list();
+            all.addAll(chunk);
+            if (chunk.size() < SHOP_REBUILD_BATCH) {
+                break;
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+        }
+        return all;
+    }
+
+    /**
+     * 需要过滤营业中、而营业时间索引还不可用时返回 true，调用方直接返回失败，不能把不过滤的结果当作营业中返回。
+     * 营业时间索引正常在启动预热时构建；还未加载时在后台构建，请求线程不等待
+     */
+    private boolean openHoursUnavailable(Boolean openNow) {
+        if (!Boolean.TRUE.equals(openNow) || shopOpenHoursIndex.isReady()) {
+            return false;
+        }
+        if (openHoursLoading.compareAndSet(false, true)) {
+            CACHE_REBUILD_EXECUTOR.submit(() -> {
+                try {
+                    rebuildShopOpenHours();
+                } catch (Exception e) {
+                    log.error("构建营业时间索引失败", e);
+                } finally {
+                    openHoursLoading.set(false);
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * 营业中过滤条件，不需要过滤时返回 null。调用前先用 openHoursUnavailable 确认索引可用
+     */
+    private LongPredicate openFilter(Boolean openNow) {
+        if (!Boolean.TRUE.equals(openNow)) {
+            return null;
+        }
+        return shopOpenHoursIndex.openAt(shopOpenHoursIndex.now());
+    }
+
+    @Override
+    public Result queryShopByName(String name, Integer current, Boolean openNow) {
+        if (openHoursUnavailable(openNow)) {
+            return Result.fail("营业时间数据正在加载，请稍后再试");
+        }
+        int from = (current - 1) * SystemConstants.MAX_PAGE_SIZE;
+        LongPredicate filter = openFilter(openNow);
+        // 1. 没有关键词时只需要过滤营业中，直接从营业时间索引中分页
+        if (StrUtil.isBlank(name) && filter != null) {
+            return Result.ok(queryShopsByIds(shopOpenHoursIndex.listOpen(null, shopOpenHoursIndex.now(), from, SystemConstants.MAX_PAGE_SIZE)));
+        }
+        // 2. 没有关键词，或名称索引还未加载完成，按数据库分页查询
+        if (StrUtil.isBlank(name) || !shopNameIndex.isReady()) {
+            if (filter != null) {
+                // 需要过滤时不能按数据库分页后再过滤（页会不满），按 id 分批扫描匹配的店铺，过滤后再分页
+                return Result.ok(queryShopsByIds(searchNameFromDb(name, from, SystemConstants.MAX_PAGE_SIZE, filter)));
+            }
+            Page<Shop> page = query()
+                    .like(StrUtil.isNotBlank(name), "name", name)
+                    .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
+            return Result.ok(page.getRecords());
+        }
+        // 3. 查询名称索引，得到当前页的店铺 id
+        List<Long> ids = shopNameIndex.search(name, from, SystemConstants.MAX_PAGE_SIZE, filter);
+        if (ids.isEmpty()) {
+            return Result.ok(Collections.emptyList());
+        }
+        // 4. 通过店铺缓存批量查询详情，保持索引给出的顺序
+        return Result.ok(queryShopsByIds(ids));
+    }
+
+    /**
+     * 名称索引不可用时，按 id 分批扫描名称匹配的店铺，在内存中过滤后分页（顺序与数据库分页相同，按 id 升序）
+     * @param filter 店铺 id 过滤条件
+     * @return 当前页的店铺 id
+     */
+    private List<Long> searchNameFromDb(String name, int from, int size, LongPredicate filter) {
+        List<Long> ids = new ArrayList<>(size);
+        int skipped = 0;
+        long lastId = 0;
+        while (true) {
+            List<Shop> chunk = query().select("id")
+                    .like("name", name)
+                    .gt("id", lastId).orderByAsc("id")
+                    .last("LIMIT " + SHOP_REBUILD_BATCH).list();
+            for (Shop shop : chunk) {
+                if (!filter.test(shop.getId())) {
+                    continue;
+                }
+                if (skipped < from) {
+                    skipped++;
+                    continue;
+                }
+                ids.add(shop.getId());
+                if (ids.size() == size) {
+                    return ids;
+                }
+            }
+            if (chunk.size() < SHOP_REBUILD_BATCH) {
+                return ids;
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+
+    /**
+     * 同步店铺位置：Redis 的 shop:geo:{typeId} 与本地空间索引
+     * @param old 修改前的店铺（至少包含 id、typeId），新增时为 null
+     * @param current 修改后的店铺（至少包含 id、typeId、x、y），删除时为 null
+     */
+    private void syncShopLocation(Shop old, Shop current) {
+        // 0. GEO 数据正在重建时，先记录修改后的位置，重建 RENAME 之后重放，避免被重建时读取的旧数据覆盖
+        recordGeoChange(old, current);
+        // 1. 删除或类型变化：从原类型的 GEO 集合中移除
+        if (old != null && (current == null || !Objects.equals(old.getTypeId(), current.getTypeId()))) {
+            stringRedisTemplate.opsForGeo().remove(SHOP_GEO_KEY + old.getTypeId(), old.getId().toString());
+        }
+        // 2. 写入新位置，GEOADD 对已存在的成员会直接覆盖坐标
+        if (current != null && current.getTypeId() != null && current.getX() != null && current.getY() != null) {
+            stringRedisTemplate.opsForGeo().add(SHOP_GEO_KEY + current.getTypeId(),
+                    new Point(current.getX(), current.getY()), current.getId().toString());
+        }
+        // 3. 本地空间索引
+        if (shopGeoIndex.isEnabled()) {
+            if (current == null) {
+                shopGeoIndex.remove(old.getId());
+            } else {
+                shopGeoIndex.put(current);
+            }
+        }
+        // 4. 只删除覆盖了原位置和新位置的瓦片，其他网格的瓦片不受影响
+        if (geoTileEnabled) {
+            Set<String> keys = new HashSet<>();
+            collectTileKeys(old, keys);
+            collectTileKeys(current, keys);
+            if (!keys.isEmpty()) {
+                stringRedisTemplate.delete(keys);
+            }
+        }
+    }
+
+    /**
+     * GEO 数据正在重建时，记录店铺修改后的位置。必须在写入 GEO 数据之前记录：
+     * 写入发生在 RENAME 之前的修改，一定能在重放时读到
+     */
+    private void recordGeoChange(Shop old, Shop current) {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(SHOP_GEO_REBUILD_RUNNING_KEY))) {
+            return;
+        }
+        Long id = current != null ? current.getId() : old.getId();
+        String location = current == null || current.getTypeId() == null || current.getX() == null || current.getY() == null
+                ? "" : StrUtil.join(",", current.getTypeId(), current.getX(), current.getY());
+        stringRedisTemplate.opsForHash().put(SHOP_GEO_REBUILD_CHANGES_KEY, id.toString(), location);
+    }
+
+    /**
+     * 收集覆盖了该店铺位置的瓦片 key：瓦片的查询半径是附近查询半径 + 网格半对角线 + 余量，
+     * 网格中心到店铺的距离不超过这个半径时，该瓦片可能包含这个店铺
+     * @param shop 至少包含 id、typeId、x、y，为 null 或缺少位置时不收集
+     */
+    private void collectTileKeys(Shop shop, Set<String> keys) {
+        if (shop == null || shop.getTypeId() == null || shop.getX() == null || shop.getY() == null) {
+            return;
+        }
+        for (String hash : GeoUtils.geohashesWithin(shop.getX(), shop.getY(),
+                SystemConstants.SHOP_NEARBY_RADIUS + GEO_TILE_PADDING, SystemConstants.SHOP_TILE_PRECISION)) {
+            keys.add(cacheClient.buildKey(CACHE_GEO_TILE_KEY, shop.getTypeId() + ":" + hash));
+        }
+    }
+
+    /**
+     * 重建店铺 GEO 数据：按 id 分批流式读取 tb_shop，管道写入临时 key，全部写完后再 RENAME 覆盖，
+     * 重建过程中查询仍然使用旧数据；同时顺带重建本地空间索引。
+     * 重建期间新增、修改、删除的店铺会被记录下来，RENAME 和替换本地索引之后重放，不会被重建时读取的旧数据覆盖。
+     * 多个节点之间用分布式锁互斥，同一时间只有一个节点写 Redis；没有拿到锁时，开启了本地空间索引的节点只重建本地索引
+     * @return 读取的店铺数量；其他节点正在重建且不需要重建本地索引时返回 -1
+     */
+    @Override
+    public synchronized int rebuildShopGeo() {
+        RLock lock = redissonClient.getLock(LOCK_SHOP_GEO_REBUILD_KEY);
+        boolean locked = lock.tryLock();
+        if (!locked && !shopGeoIndex.isEnabled()) {
+            log.info("其他节点正在重建店铺 GEO 数据，跳过");
+            return -1;
+        }
+        try {
+            return rebuildShopGeo(locked);
+        } finally {
+            if (locked) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @param writeRedis 是否写入 Redis GEO 数据，为 false 时只重建本地空间索引
+     */
+    private int rebuildShopGeo(boolean writeRedis) {
+        long begin = System.currentTimeMillis();
+        Set<Long> typeIds = new HashSet<>();
+        List<Shop> all = new ArrayList<>();
+        int total;
+        // 0. 开始记录重建期间的修改（先清理上次中断遗留的记录）
+        if (writeRedis) {
+            stringRedisTemplate.delete(SHOP_GEO_REBUILD_CHANGES_KEY);
+            stringRedisTemplate.opsForValue().set(SHOP_GEO_REBUILD_RUNNING_KEY, "1", SHOP_GEO_REBUILD_RUNNING_TTL, TimeUnit.MINUTES);
+        }
+        if (shopGeoIndex.isEnabled()) {
+            shopGeoIndex.beginLoad();
+        }
+        try {
+            total = readShopGeo(writeRedis, typeIds, all);
+        } catch (RuntimeException e) {
+            // 没有 RENAME、没有替换本地索引，线上数据一直在被直接修改，不需要重放
+            if (writeRedis) {
+                stringRedisTemplate.delete(SHOP_GEO_REBUILD_RUNNING_KEY);
+            }
+            if (shopGeoIndex.isEnabled()) {
+                shopGeoIndex.abortLoad();
+            }
+            throw e;
+        }
+
+        // 3. 用新数据覆盖旧数据（RENAME 是原子的）；已经没有店铺的类型，删除旧的 GEO 集合
+        if (writeRedis) {
+            for (Long typeId : typeIds) {
+                stringRedisTemplate.rename(SHOP_GEO_KEY + typeId + SHOP_GEO_REBUILD_SUFFIX, SHOP_GEO_KEY + typeId);
+            }
+            Set<Long> allTypeIds = shopTypeService.query().select("id").list().stream()
+                    .map(ShopType::getId)
+                    .collect(Collectors.toSet());
+            List<String> staleKeys = allTypeIds.stream()
+                    .filter(typeId -> !typeIds.contains(typeId))
+                    .map(typeId -> SHOP_GEO_KEY + typeId)
+                    .collect(Collectors.toList());
+            if (!staleKeys.isEmpty()) {
+                stringRedisTemplate.delete(staleKeys);
+            }
+            // 3.1 重放重建期间的修改
+            allTypeIds.addAll(typeIds);
+            replayGeoChanges(allTypeIds);
+        }
+
+        // 4. 重建本地空间索引，加载期间的修改在替换之后重放
+        if (shopGeoIndex.isEnabled()) {
+            shopGeoIndex.load(all);
+        }
+        log.info("店铺 GEO 数据重建完成，共 {} 个店铺，{}，耗时 {} ms",
+                total, writeRedis ? "已写入 Redis" : "只重建本地索引", System.currentTimeMillis() - begin);
+        return total;
+    }
+
+    /**
+     * 按 id 分批读取全部店铺位置，写入临时 GEO key
+     * @param typeIds 写入过的类型
+     * @param all 开启本地空间索引时，收集全部店铺
+     * @return 读取的店铺数量
+     */
+    private int readShopGeo(boolean writeRedis, Set<Long> typeIds, List<Shop> all) {
+        long lastId = 0;
+        int total = 0;
+        while (true) {
+            // 1. 按 id 游标分批读取，避免一次性加载全表，也避免深分页
+            List<Shop> chunk = query().select("id", "type_id", "x", "y")
+                    .gt("id", lastId).orderByAsc("id")
+                    .last("LIMIT " + SHOP_REBUILD_BATCH).list();
+            if (chunk.isEmpty()) {
+                break;
+            }
+            lastId = chunk.get(chunk.size() - 1).getId();
+            total += chunk.size();
+
+            // 2. 按类型分组，一次管道写入本批数据
+            if (writeRedis) {
+                writeGeoChunk(chunk, typeIds);
+            }
+            if (shopGeoIndex.isEnabled()) {
+                all.addAll(chunk);
+            }
+            if (chunk.size() < SHOP_REBUILD_BATCH) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 重放重建期间修改过的店铺。先删除重建标记，此后的修改直接写入新的 GEO 集合；
+     * 标记删除之前的修改都已记录（记录先于写入），按记录的修改后位置覆盖 RENAME 带回来的旧数据。
+     * 使用记录的位置而不是重新查询数据库，因为修改所在的事务可能还没有提交
+     * @param typeIds 全部类型，用于从原类型的 GEO 集合中移除
+     */
+    private void replayGeoChanges(Set<Long> typeIds) {
+        stringRedisTemplate.delete(SHOP_GEO_REBUILD_RUNNING_KEY);
+        Map<Object, Object> changes = stringRedisTemplate.opsForHash().entries(SHOP_GEO_REBUILD_CHANGES_KEY);
+        if (changes.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.delete(SHOP_GEO_REBUILD_CHANGES_KEY);
+
+        // 1. 解析修改后的位置，删除的店铺为 null
+        Map<String, Shop> shops = new HashMap<>(changes.size());
+        Set<String> tileKeys = new HashSet<>();
+        changes.forEach((id, location) -> {
+            Shop shop = null;
+            if (StrUtil.isNotEmpty(location.toString())) {
+                String[] parts = location.toString().split(",");
+                shop = new Shop().setId(Long.valueOf(id.toString())).setTypeId(Long.valueOf(parts[0]))
+                        .setX(Double.valueOf(parts[1])).setY(Double.valueOf(parts[2]));
+                collectTileKeys(shop, tileKeys);
+            }
+            shops.put(id.toString(), shop);
+        });
+
+        // 2. 一次管道：从其他类型的集合中移除，写入修改后的位置
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                shops.forEach((id, shop) -> {
+                    for (Long typeId : typeIds) {
+                        if (shop == null || !typeId.equals(shop.getTypeId())) {
+                            operations.opsForGeo().remove(SHOP_GEO_KEY + typeId, id);
+                        }
+                    }
+                    if (shop != null) {
+                        operations.opsForGeo().add(SHOP_GEO_KEY + shop.getTypeId(), new Point(shop.getX(), shop.getY()), id);
+                    }
+                });
+                return null;
+            }
+        });
+
+        // 3. 重建期间生成的瓦片可能包含旧位置
+        if (geoTileEnabled && !tileKeys.isEmpty()) {
+            stringRedisTemplate.delete(tileKeys);
+        }
+        log.info("重放 GEO 重建期间修改的店铺 {} 个", shops.size());
+    }
+
+    /**
+     * 把一批店铺按类型分组，一次管道写入各类型的临时 GEO key
+     * @param typeIds 已经写入过的类型，首次写入某个类型时先清理上次异常中断遗留的临时 key
+     */
+    private void writeGeoChunk(List<Shop> chunk, Set<Long> typeIds) {
+        Map<Long, List<Shop>> map = chunk.stream()
+                .filter(s -> s.getTypeId() != null && s.getX() != null && s.getY() != null)
+                .collect(Collectors.groupingBy(Shop::getTypeId));
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (Map.Entry<Long, List<Shop>> entry : map.entrySet()) {
+                    String tmpKey = SHOP_GEO_KEY + entry.getKey() + SHOP_GEO_REBUILD_SUFFIX;
+                    if (typeIds.add(entry.getKey())) {
+                        operations.delete(tmpKey);
+                    }
+                    List<RedisGeoCommands.GeoLocation<String>> locations = new ArrayList<>(entry.getValue().size());
+                    for (Shop shop : entry.getValue()) {
+                        locations.add(new RedisGeoCommands.GeoLocation<>(
+                                shop.getId().toString(), new Point(shop.getX(), shop.getY())));
+                    }
+                    operations.opsForGeo().add(tmpKey, locations);
+                }
+                // 重建标记续期
+                operations.expire(SHOP_GEO_REBUILD_RUNNING_KEY, SHOP_GEO_REBUILD_RUNNING_TTL, TimeUnit.MINUTES);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public Result queryShopByType(Integer typeId, Integer current, Double x, Double y, Boolean openNow) {
+        if (openHoursUnavailable(openNow)) {
+            return Result.fail("营业时间数据正在加载，请稍后再试");
+        }
+        LongPredicate filter = openFilter(openNow);
         // 1. 判断是否需要根据坐标查询
         if (x == null || y == null){
-            // 不需要地理坐标查询，按数据库查询
+            // 只过滤营业中时，直接从营业时间索引中按 id 分页，不需要查询数据库
+            if (filter != null) {
+                int from = (current - 1) * SystemConstants.DEFAULT_PAGE_SIZE;
+                List<Long> ids = shopOpenHoursIndex.listOpen(typeId.longValue(), shopOpenHoursIndex.now(), from, SystemConstants.DEFAULT_PAGE_SIZE);
+                return Result.ok(queryShopsByIds(ids));
+            }
+            // 不需要地理坐标查询，按数据库分页查询 id，再通过店铺缓存查询详情
             Page<Shop> page = query()
+                    .select("id")
                     .eq("type_id", typeId)
                     .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE));
+            List<Long> ids = page.getRecords().stream().map(Shop::getId).collect(Collectors.toList());
             // 返回数据
-            return Result.ok(page.getRecords());
+            return Result.ok(queryShopsByIds(ids));
         }
 
         // 2. 计算分页参数
         int from = (current - 1) * SystemConstants.DEFAULT_PAGE_SIZE;
         int end = current * SystemConstants.DEFAULT_PAGE_SIZE;
 
-        // 3. 查询 Redis，按照距离排序、分页。结果：shopId、distance
+        // 3. 优先从瓦片缓存中查询，命中时不需要访问 Redis GEO 和数据库
+        List<Shop> cached = queryNearbyFromTile(typeId.longValue(), x, y, null, from, SystemConstants.DEFAULT_PAGE_SIZE, filter);
+        if (cached != null) {
+            return Result.ok(cached);
+        }
+
+        // 4. 查询附近店铺，按照距离排序、分页。结果：shopId、distance
+        List<GeoHit> hits = searchNearbyAfter(typeId.longValue(), x, y, null, 0, end, filter, shopGeoIndex.isReady());
+
+        // 5. 截取 from ~ end 的部分
+        if (hits.size() <= from) {
+            // 传入的开始页面非法，直接超过了系统重总页码数
+            return Result.ok(Collections.emptyList());
+        }
+
+        // 6. 根据 shopId 查询店铺，并填充距离
+        return Result.ok(queryShopsWithDistance(hits.subList(from, hits.size())));
+    }
+
+    @Override
+    public Result queryShopByTypeScroll(Integer typeId, Double x, Double y, String cursor, Boolean openNow) {
+        if (openHoursUnavailable(openNow)) {
+            return Result.fail("营业时间数据正在加载，请稍后再试");
+        }
+        // 1. 解析游标：上一页最后一条的距离、id，已经返回的条数，以及游标的来源
+        GeoHit after = null;
+        int consumed = 0;
+        int source = shopGeoIndex.isReady() ? GEO_SOURCE_LOCAL : GEO_SOURCE_REDIS;
+        if (StrUtil.isNotBlank(cursor)) {
+            try {
+                CursorUtils.Cursor parsed = CursorUtils.decode(cursor, 4);
+                after = new GeoHit(parsed.getLong(1, 1, Long.MAX_VALUE), parsed.getDouble(0, 0, Double.MAX_VALUE));
+                consumed = parsed.getInt(2, 0, SystemConstants.MAX_SCROLL_OFFSET);
+                source = parsed.getInt(3, GEO_SOURCE_REDIS, GEO_SOURCE_LOCAL);
+            } catch (IllegalArgumentException e) {
+                return Result.fail("无效的游标");
+            }
+        }
+        if (source == GEO_SOURCE_LOCAL && !shopGeoIndex.isReady()) {
+            // 游标来自开启了本地空间索引的节点，本节点无法按同样的距离继续翻页
+            return Result.fail("游标已失效，请重新查询");
+        }
+
+        // 2. 从游标位置继续查询一页：Redis 来源优先使用瓦片缓存，瓦片与 GEOSEARCH 的距离一致，可以互相切换
+        LongPredicate filter = openFilter(openNow);
+        int size = SystemConstants.DEFAULT_PAGE_SIZE;
+        boolean local = source == GEO_SOURCE_LOCAL;
+        List<Shop> shops = local ? null : queryNearbyFromTile(typeId.longValue(), x, y, after, 0, size, filter);
+        List<GeoHit> hits;
+        if (shops != null) {
+            hits = new ArrayList<>(shops.size());
+            for (Shop shop : shops) {
+                hits.add(new GeoHit(shop.getId(), shop.getDistance()));
+            }
+        } else {
+            hits = searchNearbyAfter(typeId.longValue(), x, y, after, consumed, size, filter, local);
+            shops = queryShopsWithDistance(hits);
+        }
+
+        // 3. 生成下一页游标，不足一页说明没有更多数据
+        String next = null;
+        if (hits.size() == size && consumed + size <= SystemConstants.MAX_SCROLL_OFFSET) {
+            GeoHit last = hits.get(hits.size() - 1);
+            next = CursorUtils.encode(last.getDistance(), last.getId(), consumed + hits.size(), source);
+        }
+        return Result.ok(new CursorResult(shops, next));
+    }
+
+    @Override
+    public Result queryShopByTypesScroll(List<Long> typeIds, Double x, Double y, String cursor, Boolean openNow) {
+        if (openHoursUnavailable(openNow)) {
+            return Result.fail("营业时间数据正在加载，请稍后再试");
+        }
+        // 1. 没有指定类型时查询全部类型
+        if (typeIds == null || typeIds.isEmpty()) {
+            typeIds = shopTypeService.getSnapshot().getList().stream()
+                    .map(ShopType::getId)
+                    .collect(Collectors.toList());
+        } else {
+            typeIds = typeIds.stream().distinct().collect(Collectors.toList());
+        }
+
+        // 2. 解析游标：与单类型的游标格式相同，consumed 为所有类型合计已经返回的条数
+        GeoHit after = null;
+        int consumed = 0;
+        int source = shopGeoIndex.isReady() ? GEO_SOURCE_LOCAL : GEO_SOURCE_REDIS;
+        if (StrUtil.isNotBlank(cursor)) {
+            try {
+                CursorUtils.Cursor parsed = CursorUtils.decode(cursor, 4);
+                after = new GeoHit(parsed.getLong(1, 1, Long.MAX_VALUE), parsed.getDouble(0, 0, Double.MAX_VALUE));
+                consumed = parsed.getInt(2, 0, SystemConstants.MAX_SCROLL_OFFSET);
+                source = parsed.getInt(3, GEO_SOURCE_REDIS, GEO_SOURCE_LOCAL);
+            } catch (IllegalArgumentException e) {
+                return Result.fail("无效的游标");
+            }
+        }
+        if (source == GEO_SOURCE_LOCAL && !shopGeoIndex.isReady()) {
+            return Result.fail("游标已失效，请重新查询");
+        }
+
+        // 3. 每个类型各取游标之后的一页，合并后按距离、id 排序，取前 size 条
+        int size = SystemConstants.DEFAULT_PAGE_SIZE;
+        List<GeoHit> merged = new ArrayList<>();
+        for (List<GeoHit> hits : searchNearbyAfterBatch(
+                typeIds, x, y, after, consumed, size, openFilter(openNow), source == GEO_SOURCE_LOCAL)) {
+            merged.addAll(hits);
+        }
+        merged.sort(ShopGeoIndex.HIT_ORDER);
+        List<GeoHit> page = merged.size() > size ? merged.subList(0, size) : merged;
+
+        // 4. 生成下一页游标，不足一页说明没有更多数据
+        String next = null;
+        if (page.size() == size && consumed + size <= SystemConstants.MAX_SCROLL_OFFSET) {
+            GeoHit last = page.get(page.size() - 1);
+            next = CursorUtils.encode(last.getDistance(), last.getId(), consumed + page.size(), source);
+        }
+        return Result.ok(new CursorResult(queryShopsWithDistance(page), next));
+    }
+
+    /**
+     * 从游标位置继续查询附近店铺。
+     * 本地空间索引可以直接跳过游标之前的网格；Redis GEOSEARCH 不支持从指定距离开始，
+     * 只能多取 consumed 条后在本地过滤，但不再需要对之前的页重复查询数据库
+     * @param after 上一页最后一条，为 null 表示第一页
+     * @param consumed 之前已经返回的条数
+     * @param filter 店铺 id 过滤条件（如营业中），为 null 表示不过滤
+     * @param local 是否查询本地空间索引，否则查询 Redis GEOSEARCH
+     */
+    private List<GeoHit> searchNearbyAfter(
+            Long typeId, Double x, Double y, GeoHit after, int consumed, int size, LongPredicate filter, boolean local) {
+        return searchNearbyAfterBatch(Collections.singletonList(typeId), x, y, after, consumed, size, filter, local).get(0);
+    }
+
+    /**
+     * 多个类型同时从游标位置继续查询，每个类型各返回最多 size 条。
+     * 本地空间索引直接在 JVM 内查询；否则把各类型的 GEOSEARCH 放在一个管道中，一次网络往返。
+     * 过滤后不足 size 条、而 Redis 中还有更多结果的类型，加倍查询数量后再查一轮
+     * @param filter 店铺 id 过滤条件（如营业中），为 null 表示不过滤
+     * @param local 是否查询本地空间索引，由游标的来源决定
+     * @return 与 typeIds 一一对应的查询结果
+     */
+    private List<List<GeoHit>> searchNearbyAfterBatch(List<Long> typeIds, Double x, Double y,
+            GeoHit after, int consumed, int size, LongPredicate filter, boolean local) {
+        List<List<GeoHit>> all = new ArrayList<>(typeIds.size());
+        if (local) {
+            for (Long typeId : typeIds) {
+                all.add(shopGeoIndex.searchAfter(typeId, x, y, SystemConstants.SHOP_NEARBY_RADIUS, after, size, filter));
+            }
+            return all;
+        }
+        // 每个类型在游标之前的结果不会超过 consumed 条（有过滤条件时可能更多，由加倍查询兜底），多取 consumed 条后在本地过滤
+        int[] limits = new int[typeIds.size()];
+        Arrays.fill(limits, consumed + size);
+        List<Integer> pending = new ArrayList<>(typeIds.size());
+        for (int i = 0; i < typeIds.size(); i++) {
+            all.add(Collections.emptyList());
+            pending.add(i);
+        }
+        while (!pending.isEmpty()) {
+            List<Long> pendingTypeIds = new ArrayList<>(pending.size());
+            List<Integer> pendingLimits = new ArrayList<>(pending.size());
+            for (int i : pending) {
+                pendingTypeIds.add(typeIds.get(i));
+                pendingLimits.add(limits[i]);
+            }
+            List<List<GeoHit>> results = geoSearchPipelined(pendingTypeIds, x, y, pendingLimits);
+            List<Integer> retry = new ArrayList<>();
+            for (int j = 0; j < pending.size(); j++) {
+                int i = pending.get(j);
+                List<GeoHit> raw = results.get(j);
+                List<GeoHit> page = filterAfter(raw, after, size, filter);
+                all.set(i, page);
+                if (page.size() < size && raw.size() == limits[i]) {
+                    limits[i] *= 2;
+                    retry.add(i);
+                }
+            }
+            pending = retry;
+        }
+        return all;
+    }
+
+    /**
+     * 在一个管道中查询多个类型的 GEOSEARCH。
+     * 距离不使用 Redis 返回的值，而是按 Redis 返回的坐标用 GeoUtils.distance 重新计算：
+     * 瓦片缓存保存的也是 Redis 中的坐标，两条路径算出的距离完全相同，游标可以在两者之间切换
+     * @param limits 每个类型最多返回的数量
+     * @return 与 typeIds 一一对应，按距离、id 升序
+     */
+    private List<List<GeoHit>> geoSearchPipelined(List<Long> typeIds, Double x, Double y, List<Integer> limits) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < typeIds.size(); i++) {
+                connection.geoCommands().geoSearch(
+                        (SHOP_GEO_KEY + typeIds.get(i)).getBytes(StandardCharsets.UTF_8),
+                        GeoReference.fromCoordinate(x, y),
+                        GeoShape.byRadius(new Distance(SystemConstants.SHOP_NEARBY_RADIUS)),
+                        RedisGeoCommands.GeoSearchCommandArgs.newGeoSearchArgs()
+                                .includeCoordinates().sortAscending().limit(limits.get(i)));
+            }
+            return null;
+        });
+        List<List<GeoHit>> all = new ArrayList<>(results.size());
+        for (Object result : results) {
+            List<GeoHit> hits = new ArrayList<>();
+            if (result instanceof GeoResults) {
+                @SuppressWarnings("unchecked")
+                GeoResults<RedisGeoCommands.GeoLocation<byte[]>> geoResults = (GeoResults<RedisGeoCommands.GeoLocation<byte[]>>) result;
+                for (GeoResult<RedisGeoCommands.GeoLocation<byte[]>> geoResult : geoResults.getContent()) {
+                    String name = new String(geoResult.getContent().getName(), StandardCharsets.UTF_8);
+                    Point point = geoResult.getContent().getPoint();
+                    hits.add(new GeoHit(Long.valueOf(name), GeoUtils.distance(x, y, point.getX(), point.getY())));
+                }
+            }
+            // 重新计算的距离与 Redis 的排序可能有细微差别，按游标的顺序重新排序
+            hits.sort(ShopGeoIndex.HIT_ORDER);
+            all.add(hits);
+        }
+        return all;
+    }
+
+    /**
+     * 取出排在游标之后、满足过滤条件的最多 size 条
+     * @param hits 按距离、id 升序
+     * @param after 为 null 表示从头开始
+     * @param filter 为 null 表示不过滤
+     */
+    private static List<GeoHit> filterAfter(List<GeoHit> hits, GeoHit after, int size, LongPredicate filter) {
+        List<GeoHit> page = new ArrayList<>(size);
+        for (GeoHit hit : hits) {
+            // 与瓦片缓存使用同样的半径判断
+            if (hit.getDistance() > SystemConstants.SHOP_NEARBY_RADIUS) {
+                continue;
+            }
+            if (after != null && ShopGeoIndex.HIT_ORDER.compare(hit, after) <= 0) {
+                continue;
+            }
+            if (filter != null && !filter.test(hit.getId())) {
+                continue;
+            }
+            page.add(hit);
+            if (page.size() == size) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Redis GEOSEARCH 查询某类型下半径内的店铺
+     * @param radius 半径（米）
+     * @return 按距离升序，包含 Redis 计算的距离和 Redis 中存储的坐标
+     */
+    private List<GeoResult<RedisGeoCommands.GeoLocation<String>>> geoSearch(Long typeId, double x, double y, double radius, int limit) {
         String key = SHOP_GEO_KEY + typeId;
-        // GEOSEARCH key BYLONLAT X Y BYRADIUS 10 WITHDISTANCE
+        // GEOSEARCH key BYLONLAT X Y BYRADIUS 10 WITHDISTANCE WITHCOORD
         GeoResults<RedisGeoCommands.GeoLocation<String>> results = stringRedisTemplate.opsForGeo()
                 .search(
                         key,
                         GeoReference.fromCoordinate(x, y),
-                        new Distance(5000), // m
+                        new Distance(radius), // m
                         // 逻辑分页，范围只能从 0 到 end，要想实现分页需要自己截取
-                        RedisGeoCommands.GeoSearchCommandArgs.newGeoSearchArgs().includeDistance().limit(end)
+                        RedisGeoCommands.GeoSearchCommandArgs.newGeoSearchArgs()
+                                .includeDistance().includeCoordinates().sortAscending().limit(limit)
                 );
+        return results == null ? Collections.emptyList() : results.getContent();
+    }
 
-        // 4. 解析出 shopId
-        if (results == null) {
-            return Result.ok(Collections.emptyList());
+    /**
+     * 从瓦片缓存查询一页附近店铺：请求坐标对齐到 geohash 网格，同一网格内的请求共用一个瓦片，
+     * 再按到请求坐标的精确距离过滤、排序。瓦片没有完整覆盖本页时返回 null，由调用方走正常查询。
+     * 瓦片中的坐标取自 Redis GEO，距离的算法与 GEOSEARCH 路径相同，两条路径生成的游标可以互相使用
+     * @param after 上一页最后一条，为 null 表示不使用游标
+     * @param from 跳过的数量
+     * @param filter 店铺 id 过滤条件（如营业中），为 null 表示不过滤
+     * @return 填充了距离的店铺，null 表示不能使用瓦片缓存
+     */
+    private List<Shop> queryNearbyFromTile(Long typeId, double x, double y, GeoHit after, int from, int size, LongPredicate filter) {
+        // 1. 本地空间索引可用时，附近查询本身就不访问 Redis，不需要瓦片
+        if (!geoTileEnabled || shopGeoIndex.isReady()) {
+            return null;
+        }
+        String hash = GeoUtils.geohash(x, y, SystemConstants.SHOP_TILE_PRECISION);
+        GeoTile tile = cacheClient.queryWithPassThrough(
+                CACHE_GEO_TILE_KEY, typeId + ":" + hash, GeoTile.class, this::buildGeoTile, CACHE_GEO_TILE_TTL, TimeUnit.SECONDS);
+        if (tile == null) {
+            return null;
         }
 
-        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> list = results.getContent();
-        if (list.size() <= from) {
-            // 传入的开始页面非法，直接超过了系统重总页码数
-            return Result.ok(Collections.emptyList());
+        // 2. 按到请求坐标的精确距离过滤、排序（距离相同按 id 排序，与游标的顺序一致）
+        double radius = SystemConstants.SHOP_NEARBY_RADIUS;
+        List<Shop> candidates = new ArrayList<>();
+        for (Shop shop : tile.getShops()) {
+            double d = GeoUtils.distance(x, y, shop.getX(), shop.getY());
+            if (d > radius || (after != null && ShopGeoIndex.HIT_ORDER.compare(new GeoHit(shop.getId(), d), after) <= 0)) {
+                continue;
+            }
+            if (filter != null && !filter.test(shop.getId())) {
+                continue;
+            }
+            shop.setDistance(d);
+            candidates.add(shop);
         }
+        candidates.sort(Comparator.comparingDouble(Shop::getDistance).thenComparingLong(Shop::getId));
+        List<Shop> page = from >= candidates.size()
+                ? Collections.emptyList()
+                : candidates.subList(from, Math.min(from + size, candidates.size()));
 
-        // 4.1 截取 from ~ end 的部分
-        List<Long> ids = new ArrayList<>(list.size());
-        Map<String, Distance> distanceMap = new HashMap<>(list.size());
-        list.stream().skip(from).forEach(result -> {
-            // 4.2 获取店铺 id
-            String shopIdStr = result.getContent().getName();
-            ids.add(Long.valueOf(shopIdStr));
-            // 4.3 获取距离
-            Distance distance = result.getDistance();
-            distanceMap.put(shopIdStr, distance);
-        });
+        // 3. 校验覆盖范围：本页最远的距离（不足一页时为整个查询半径）加上请求点到网格中心的距离，
+        // 必须在瓦片的完整覆盖半径之内，否则可能漏掉候选数量被截断的店铺（过滤条件只会去掉候选，不影响这一判断）
+        double needed = page.size() == size ? page.get(size - 1).getDistance() : radius;
+        double offset = GeoUtils.distance(x, y, tile.getX(), tile.getY());
+        if (needed + offset + GEO_TILE_MARGIN >= tile.getCovered()) {
+            return null;
+        }
+        return new ArrayList<>(page);
+    }
+
+    /**
+     * 构建瓦片：以网格中心为圆心，查询半径 = 附近查询半径 + 中心到网格角的距离，
+     * 这样网格内任意请求点的查询圆都被瓦片覆盖；候选最多保留 SHOP_TILE_MAX_SIZE 个
+     * @param tileId {typeId}:{geohash}
+     */
+    private GeoTile buildGeoTile(String tileId) {
+        int i = tileId.indexOf(':');
+        Long typeId = Long.valueOf(tileId.substring(0, i));
+        double[] box = GeoUtils.geohashBox(tileId.substring(i + 1));
+        double cx = (box[0] + box[2]) / 2;
+        double cy = (box[1] + box[3]) / 2;
+        double radius = SystemConstants.SHOP_NEARBY_RADIUS + GeoUtils.halfDiagonal(box) + GEO_TILE_PADDING;
 
-        // 5. 根据 shopId 去数据库中查询
-        String idStr = StrUtil.join(",", ids);
-        List<Shop> shops = query().in("id", ids).last("ORDER BY FIELD(id," + idStr + ")").list();
+        // 多查一个，用于判断候选数量是否被截断
+        int max = SystemConstants.SHOP_TILE_MAX_SIZE;
+        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> results = geoSearch(typeId, cx, cy, radius, max + 1);
+        GeoTile tile = new GeoTile();
+        tile.setX(cx);
+        tile.setY(cy);
+        if (results.size() > max) {
+            results = results.subList(0, max);
+            // 截断后，只有到中心的距离小于最后一个候选的店铺才保证完整
+            tile.setCovered(results.get(max - 1).getDistance().getValue());
+        } else {
+            tile.setCovered(radius);
+        }
+        List<Long> ids = new ArrayList<>(results.size());
+        Map<Long, Point> points = new HashMap<>(results.size());
+        for (GeoResult<RedisGeoCommands.GeoLocation<String>> result : results) {
+            Long id = Long.valueOf(result.getContent().getName());
+            ids.add(id);
+            points.put(id, result.getContent().getPoint());
+        }
+        List<Shop> shops = queryShopsByIds(ids);
+        // 坐标使用 Redis GEO 中存储的值，与 GEOSEARCH 路径的距离计算保持一致；到网格中心的距离没有意义，不写入缓存
         for (Shop shop : shops) {
-            shop.setDistance(distanceMap.get(shop.getId().toString()).getValue());
+            Point point = points.get(shop.getId());
+            shop.setX(point.getX()).setY(point.getY()).setDistance(null);
         }
+        tile.setShops(shops);
+        return tile;
+    }
 
-        // 6. 返回
-        return Result.ok(shops);
+    /**
+     * 根据附近查询结果查询店铺，保持距离顺序并填充距离
+     */
+    private List<Shop> queryShopsWithDistance(List<GeoHit> hits) {
+        if (hits.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(hits.size());
+        Map<Long, Double> distanceMap = new HashMap<>(hits.size());
+        for (GeoHit hit : hits) {
+            ids.add(hit.getId());
+            distanceMap.put(hit.getId(), hit.getDistance());
+        }
+        // 通过店铺缓存批量查询，只有未命中的店铺才查询数据库；返回的对象是新建的，可以直接填充距离
+        List<Shop> shops = queryShopsByIds(ids);
+        for (Shop shop : shops) {
+            shop.setDistance(distanceMap.get(shop.getId()));
+        }
+        return shops;
+    }
+
+    /**
+     * 通过店铺缓存批量查询店铺，保持 ids 的顺序，已删除的店铺会被忽略
+     */
+    private List<Shop> queryShopsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Shop> shopMap = cacheClient.queryHashBatchWithPassThrough(
+                CACHE_SHOP_HASH_KEY, ids, Shop.class, Shop::getId, this::listByIds, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        return new ArrayList<>(shopMap.values());
     }
 }
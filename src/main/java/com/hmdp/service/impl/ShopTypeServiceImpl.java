@@ -1,69 +1,200 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.SecureUtil;
 import cn.hutool.json.JSONUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopTypeSnapshot;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
-import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_KEY;
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
  * <p>
  *  服务实现类
  * </p>
+ * 店铺类型几乎不变，查询直接返回进程内的不可变快照（包括预先序列化好的响应体），不再每次读取 Redis 并逐条解析 JSON。
+ * 修改 tb_shop_type 后调用 publishChange（POST /admin/shop-type/changed）：递增 shop:type:version 并通过
+ * shop:type:changed 频道通知所有节点，各节点收到后从数据库重建快照；定时比对版本号，兜底丢失的通知
  *
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    private volatile ShopTypeSnapshot snapshot;
+
+    /**
+     * 订阅类型变更通知，消息内容为新的版本号
+     */
+    @PostConstruct
+    private void subscribe() {
+        redissonClient.getTopic(SHOP_TYPE_CHANNEL).addListener(Long.class, (channel, version) -> {
+            ShopTypeSnapshot snap = snapshot;
+            if (snap == null || snap.getVersion() < version) {
+                try {
+                    reloadSnapshot();
+                } catch (Exception e) {
+                    log.error("重建店铺类型快照失败，等待定时刷新", e);
+                }
+            }
+        });
+    }
+
     @Override
     public Result getList() {
-        String key = CACHE_SHOP_TYPE_KEY;
-        List<String> shopTypeList = new ArrayList<>();
+        ShopTypeSnapshot snap = getSnapshot();
+        if (snap.getList().isEmpty()) {
+            return Result.fail("不存在分类！");
+        }
+        return Result.ok(snap.getList());
+    }
+
+    /**
+     * 获取当前快照：直接读取本地引用，没有任何网络开销
+     */
+    @Override
+    public ShopTypeSnapshot getSnapshot() {
+        ShopTypeSnapshot snap = snapshot;
+        if (snap != null) {
+            return snap;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                // 首次加载（预热之前的请求），优先使用 Redis 中的列表
+                snapshot = buildSnapshot(loadFromRedis(), currentVersion());
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 从数据库重新加载，并重写 Redis 中的列表（启动预热、收到变更通知时调用）
+     */
+    @Override
+    public synchronized void reloadSnapshot() {
+        // 先读版本再读数据库：读取期间又有修改时，快照的版本偏旧，下次比对时会再重建一次
+        long version = currentVersion();
+        snapshot = buildSnapshot(loadFromDbAndCache(), version);
+        log.debug("店铺类型快照已重建，版本 {}", version);
+    }
+
+    /**
+     * 发布类型变更：递增版本号并通知所有节点（包括本节点）从数据库重建快照
+     * @return 新的版本号
+     */
+    @Override
+    public long publishChange() {
+        Long version = stringRedisTemplate.opsForValue().increment(SHOP_TYPE_VERSION_KEY);
+        redissonClient.getTopic(SHOP_TYPE_CHANNEL).publish(version);
+        return version;
+    }
+
+    /**
+     * 定时比对版本号，兜底节点没有收到变更通知（如订阅连接断开）的情况
+     */
+    @Scheduled(fixedDelayString = "${hmdp.shop.type-snapshot.refresh-ms:30000}",
+            initialDelayString = "${hmdp.shop.type-snapshot.refresh-ms:30000}")
+    public void refreshSnapshot() {
+        try {
+            ShopTypeSnapshot snap = snapshot;
+            if (snap == null || snap.getVersion() != currentVersion()) {
+                reloadSnapshot();
+            }
+        } catch (Exception e) {
+            log.error("刷新店铺类型快照失败", e);
+        }
+    }
+
+    private long currentVersion() {
+        String value = stringRedisTemplate.opsForValue().get(SHOP_TYPE_VERSION_KEY);
+        return value == null ? 0L : Long.parseLong(value);
+    }
+
+    /**
+     * 读取 Redis 中的列表，不存在时从数据库加载
+     */
+    private List<ShopType> loadFromRedis() {
         // 1. 在 Redis 中查找
-        shopTypeList = stringRedisTemplate.opsForList().range(key, 0, -1);
+        List<String> shopTypeList = stringRedisTemplate.opsForList().range(CACHE_SHOP_TYPE_KEY, 0, -1);
 
         // 2. 如果找到，返回
-        if (!shopTypeList.isEmpty()) {
-            List<ShopType> typeList = new ArrayList<>();
+        if (shopTypeList != null && !shopTypeList.isEmpty()) {
+            List<ShopType> typeList = new ArrayList<>(shopTypeList.size());
             for (String s : shopTypeList) {
-                ShopType shopType = JSONUtil.toBean(s, ShopType.class);
-                typeList.add(shopType);
+                typeList.add(JSONUtil.toBean(s, ShopType.class));
             }
-            return Result.ok(typeList);
+            return typeList;
         }
 
-        // 3. 不存在，去 MySQL 数据库查询，若数据库中没记录，会返回一个空集合，空集合和 null 不一样
-        List<ShopType> typeList = query().orderByAsc("sort").list();
+        // 3. 不存在，去 MySQL 数据库查询
+        return loadFromDbAndCache();
+    }
 
-        // 4. 不存在，返回错误
-        if (typeList.isEmpty()){
-            return Result.fail("不存在分类！");
+    /**
+     * 从数据库加载，并一次管道重写 Redis 中的列表（设置过期时间）
+     */
+    private List<ShopType> loadFromDbAndCache() {
+        List<ShopType> typeList = query().orderByAsc("sort").list();
+        if (typeList.isEmpty()) {
+            return typeList;
         }
+        List<String> values = typeList.stream().map(JSONUtil::toJsonStr).collect(Collectors.toList());
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                operations.delete(CACHE_SHOP_TYPE_KEY);
+                operations.opsForList().rightPushAll(CACHE_SHOP_TYPE_KEY, values);
+                operations.expire(CACHE_SHOP_TYPE_KEY, CACHE_SHOP_TYPE_KEY_TTL, TimeUnit.MINUTES);
+                return null;
+            }
+        });
+        return typeList;
+    }
 
-        // 5. 存在，保存到 Redis 中
-        for (ShopType shopType : typeList) {
-            String s = JSONUtil.toJsonStr(shopType);
-            shopTypeList.add(s);
+    /**
+     * 生成快照：按接口的返回格式（Result）预先序列化，ETag 为响应体的 MD5
+     */
+    private ShopTypeSnapshot buildSnapshot(List<ShopType> typeList, long version) {
+        Result result = typeList.isEmpty() ? Result.fail("不存在分类！") : Result.ok(typeList);
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("序列化店铺类型失败", e);
         }
-
-        stringRedisTemplate.opsForList().rightPushAll(key, shopTypeList);
-
-        // 6. 并返回
-        return Result.ok(typeList);
+        String etag = "\"" + SecureUtil.md5(json) + "\"";
+        return new ShopTypeSnapshot(Collections.unmodifiableList(typeList), json, etag, version);
     }
 }
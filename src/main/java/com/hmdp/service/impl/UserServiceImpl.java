@@ -11,6 +11,7 @@ import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
 import com.hmdp.utils.RegexUtils;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
@@ -26,10 +27,12 @@ import javax.annotation.Resource;
 import javax.servlet.http.HttpSession;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 
@@ -39,6 +42,8 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
 
     @Resource
     private StringRedisTemplate stringRedisTemplate; // 操作 string 类型的数据
+    @Resource
+    private CacheClient cacheClient;
 
     /**
      * 发送验证码
@@ -210,4 +215,14 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         save(user);
         return user;
     }
+
+    @Override
+    public Map<Long, UserDTO> queryUserDTOs(Collection<Long> ids) {
+        return cacheClient.queryHashBatchWithPassThrough(
+                CACHE_USER_KEY, ids, UserDTO.class, UserDTO::getId,
+                misses -> listByIds(misses).stream()
+                        .map(user -> BeanUtil.copyProperties(user, UserDTO.class))
+                        .collect(Collectors.toList()),
+                CACHE_USER_TTL, TimeUnit.MINUTES);
+    }
 }
@@ -13,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
 
@@ -36,11 +37,45 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Override
     public Result queryVoucherOfShop(Long shopId) {
         // 查询优惠券信息
-        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
+        List<Voucher> vouchers = queryVoucherOfShopWithStock(shopId);
         // 返回结果
         return Result.ok(vouchers);
     }
 
+    /**
+     * 查询店铺的优惠券，秒杀券的库存使用 Redis 中正在扣减的实时库存（一次 MGET），
+     * 数据库中的库存由异步下单线程更新，会落后于实际剩余量
+     * @param shopId
+     * @return
+     */
+    @Override
+    public List<Voucher> queryVoucherOfShopWithStock(Long shopId) {
+        // 1. 查询优惠券信息
+        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
+        List<Voucher> seckillVouchers = vouchers.stream()
+                .filter(voucher -> voucher.getStock() != null)
+                .collect(Collectors.toList());
+        if (seckillVouchers.isEmpty()) {
+            return vouchers;
+        }
+        // 2. 批量查询秒杀库存
+        List<String> keys = seckillVouchers.stream()
+                .map(voucher -> SECKILL_STOCK_KEY + voucher.getId())
+                .collect(Collectors.toList());
+        List<String> stocks = stringRedisTemplate.opsForValue().multiGet(keys);
+        if (stocks == null) {
+            return vouchers;
+        }
+        // 3. 覆盖库存，Redis 中不存在（未预热）时保留数据库的值
+        for (int i = 0; i < seckillVouchers.size(); i++) {
+            String stock = stocks.get(i);
+            if (stock != null) {
+                seckillVouchers.get(i).setStock(Integer.valueOf(stock));
+            }
+        }
+        return vouchers;
+    }
+
     @Override
     @Transactional
     public void addSeckillVoucher(Voucher voucher) {
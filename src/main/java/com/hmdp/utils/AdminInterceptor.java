@@ -0,0 +1,34 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Set;
+
+/**
+ * @Description: 运维接口拦截器：只有配置在 hmdp.admin.user-ids 中的用户可以访问 /admin/**
+ * 在 LoginInterceptor 之后执行，此时 ThreadLocal 中一定有用户
+ */
+public class AdminInterceptor implements HandlerInterceptor {
+
+    private final Set<Long> adminIds;
+
+    public AdminInterceptor(Set<Long> adminIds) {
+        this.adminIds = adminIds;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 1. 判断当前用户是否是管理员
+        UserDTO user = UserHolder.getUser();
+        if (user == null || !adminIds.contains(user.getId())) {
+            // 不是，拒绝访问
+            response.setStatus(403);
+            return false;
+        }
+        // 是管理员，放行
+        return true;
+    }
+}
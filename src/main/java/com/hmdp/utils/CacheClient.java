@@ -1,21 +1,44 @@
 package com.hmdp.utils;
 
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
 import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
-import static com.hmdp.utils.RedisConstants.CACHE_NULL_TTL;
-import static com.hmdp.utils.RedisConstants.LOCK_SHOP_KEY;
+import static com.hmdp.utils.RedisConstants.*;
 
 @Slf4j
 @Component
@@ -23,10 +46,36 @@ public class CacheClient {
 
     private final StringRedisTemplate stringRedisTemplate;
 
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    private final CacheStats cacheStats;
 
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    // 超过该大小（字节）的缓存值会被压缩后写入，0 表示关闭压缩
+    @Value("${hmdp.cache.compress-threshold:1024}")
+    private int compressThreshold;
+
+    // 使用 ThreadPoolExecutor 而非 Executors 工厂方法，便于统计重建队列深度
+    private static final ThreadPoolExecutor CACHE_REBUILD_EXECUTOR = new ThreadPoolExecutor(
+            10, 10, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+
+    // 允许通过运维接口升级版本的命名空间，避免任意前缀无限增加本地副本和定时刷新的 key
+    public static final Set<String> NAMESPACES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            CACHE_SHOP_HASH_KEY, CACHE_GEO_TILE_KEY,
+            CACHE_BLOG_KEY, CACHE_BLOG_COMMENTS_KEY, CACHE_USER_KEY)));
+
+    // 命名空间版本号的本地副本：keyPrefix -> 版本号，定时从 Redis 批量刷新
+    private final Map<String, Long> namespaceVersions = new ConcurrentHashMap<>();
+
+    // 按字段更新 Hash 缓存的脚本
+    private static final DefaultRedisScript<Long> HASH_UPDATE_SCRIPT;
+    static {
+        HASH_UPDATE_SCRIPT = new DefaultRedisScript<>();
+        HASH_UPDATE_SCRIPT.setLocation(new ClassPathResource("hash_update.lua"));
+        HASH_UPDATE_SCRIPT.setResultType(Long.class);
+    }
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate, CacheStats cacheStats) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheStats = cacheStats;
+        cacheStats.bindRebuildExecutor(CACHE_REBUILD_EXECUTOR);
     }
 
     /**
@@ -37,7 +86,7 @@ public class CacheClient {
      * @param unit
      */
     public void set(String key, Object value, Long time, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        setRaw(key, JSONUtil.toJsonStr(value), time, unit);
     }
 
     /**
@@ -48,8 +97,9 @@ public class CacheClient {
         RedisData redisData = new RedisData();
         redisData.setData(value);
         redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
-        // 写入Redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        // 写入Redis：额外设置一个宽裕的物理过期时间，热点 key 会在此之前被重建，
+        // 而命名空间版本升级后遗留的旧 key 也能自然过期
+        setRaw(key, JSONUtil.toJsonStr(redisData), unit.toSeconds(time) + CACHE_LOGICAL_EXPIRE_GRACE, TimeUnit.SECONDS);
     }
 
 
@@ -67,22 +117,26 @@ public class CacheClient {
      */
     public <R,ID> R queryWithPassThrough(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit){
-        String key = keyPrefix + id;
+        String key = buildKey(keyPrefix, id);
+        CacheStats.Metrics metrics = cacheStats.of(keyPrefix, CacheStats.PASS_THROUGH);
         // 1.从redis查询商铺缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+        String json = getRaw(key);
         // 2.判断是否存在
         if (StrUtil.isNotBlank(json)) {
             // 3.存在，直接返回
+            metrics.hits.increment();
             return JSONUtil.toBean(json, type);
         }
         // 判断命中的是否是空值
         if (json != null) {
             // 返回一个错误信息
+            metrics.nullHits.increment();
             return null;
         }
 
         // 4.不存在，根据id查询数据库
-        R r = dbFallback.apply(id);
+        metrics.misses.increment();
+        R r = loadFromDb(metrics, dbFallback, id);
         // 5.不存在，返回错误
         if (r == null) {
             // 将空值写入redis
@@ -97,12 +151,25 @@ public class CacheClient {
 
     public <R, ID> R queryWithLogicalExpire(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
-        String key = keyPrefix + id;
+        String key = buildKey(keyPrefix, id);
+        CacheStats.Metrics metrics = cacheStats.of(keyPrefix, CacheStats.LOGICAL_EXPIRE);
         // 1.从redis查询商铺缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+        String json = getRaw(key);
         // 2.判断是否存在
-        if (StrUtil.isBlank(json)) {
-            // 3.存在，直接返回
+        if (json == null) {
+            // 3.不存在（未预热或已物理过期），同步查询数据库并写入
+            metrics.misses.increment();
+            R r = loadFromDb(metrics, dbFallback, id);
+            if (r == null) {
+                stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+                return null;
+            }
+            this.setWithLogicalExpire(key, r, time, unit);
+            return r;
+        }
+        // 判断命中的是否是空值
+        if (json.isEmpty()) {
+            metrics.nullHits.increment();
             return null;
         }
         // 4.命中，需要先把json反序列化为对象
@@ -112,22 +179,29 @@ public class CacheClient {
         // 5.判断是否过期
         if(expireTime.isAfter(LocalDateTime.now())) {
             // 5.1.未过期，直接返回店铺信息
+            metrics.hits.increment();
             return r;
         }
         // 5.2.已过期，需要缓存重建
+        metrics.expiredHits.increment();
         // 6.缓存重建
         // 6.1.获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
+        String lockKey = LOCK_CACHE_KEY + key;
         boolean isLock = tryLock(lockKey);
         // 6.2.判断是否获取锁成功
         if (isLock){
             // 6.3.成功，开启独立线程，实现缓存重建
+            metrics.rebuilds.increment();
             CACHE_REBUILD_EXECUTOR.submit(() -> {
                 try {
                     // 查询数据库
-                    R newR = dbFallback.apply(id);
-                    // 重建缓存
-                    this.setWithLogicalExpire(key, newR, time, unit);
+                    R newR = loadFromDb(metrics, dbFallback, id);
+                    // 重建缓存，数据已被删除时写入空值
+                    if (newR == null) {
+                        stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+                    } else {
+                        this.setWithLogicalExpire(key, newR, time, unit);
+                    }
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }finally {
@@ -135,6 +209,8 @@ public class CacheClient {
                     unlock(lockKey);
                 }
             });
+        } else {
+            metrics.lockFailures.increment();
         }
         // 6.4.返回过期的商铺信息
         return r;
@@ -142,34 +218,39 @@ public class CacheClient {
 
     public <R, ID> R queryWithMutex(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
-        String key = keyPrefix + id;
+        String key = buildKey(keyPrefix, id);
+        CacheStats.Metrics metrics = cacheStats.of(keyPrefix, CacheStats.MUTEX);
         // 1.从redis查询商铺缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
+        String shopJson = getRaw(key);
         // 2.判断是否存在
         if (StrUtil.isNotBlank(shopJson)) {
             // 3.存在，直接返回
+            metrics.hits.increment();
             return JSONUtil.toBean(shopJson, type);
         }
         // 判断命中的是否是空值
         if (shopJson != null) {
             // 返回一个错误信息
+            metrics.nullHits.increment();
             return null;
         }
 
         // 4.实现缓存重建
         // 4.1.获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
+        String lockKey = LOCK_CACHE_KEY + key;
         R r = null;
         try {
             boolean isLock = tryLock(lockKey);
             // 4.2.判断是否获取成功
             if (!isLock) {
                 // 4.3.获取锁失败，休眠并重试
+                metrics.lockFailures.increment();
                 Thread.sleep(50);
                 return queryWithMutex(keyPrefix, id, type, dbFallback, time, unit);
             }
             // 4.4.获取锁成功，根据id查询数据库
-            r = dbFallback.apply(id);
+            metrics.misses.increment();
+            r = loadFromDb(metrics, dbFallback, id);
             // 5.不存在，返回错误
             if (r == null) {
                 // 将空值写入redis
@@ -189,6 +270,394 @@ public class CacheClient {
         return r;
     }
 
+    /**
+     * 方法 4：以 Hash 结构缓存对象，每个属性对应一个字段，一次 HGETALL 读出整个对象；
+     * 写操作可以通过 {@link #updateHashFields} 只修改变化的字段，而不必删除整条缓存。
+     * 同样利用缓存空值（只含 _null 字段的 Hash）解决缓存穿透问题
+     * @param keyPrefix
+     * @param id
+     * @param type
+     * @param dbFallback
+     * @param time
+     * @param unit
+     * @return
+     * @param <R>
+     * @param <ID>
+     */
+    public <R, ID> R queryHashWithPassThrough(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = buildKey(keyPrefix, id);
+        CacheStats.Metrics metrics = cacheStats.of(keyPrefix, CacheStats.HASH);
+        // 1.从redis查询Hash缓存
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(key);
+        // 2.判断是否存在
+        if (!entries.isEmpty()) {
+            // 判断命中的是否是空值
+            if (entries.containsKey(CACHE_NULL_FIELD)) {
+                metrics.nullHits.increment();
+                return null;
+            }
+            // 3.存在，直接返回
+            metrics.hits.increment();
+            return BeanUtil.fillBeanWithMap(entries, newInstance(type), false);
+        }
+
+        // 4.不存在，根据id查询数据库
+        metrics.misses.increment();
+        R r = loadFromDb(metrics, dbFallback, id);
+        // 5.不存在，将空值写入redis
+        if (r == null) {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    operations.opsForHash().put(key, CACHE_NULL_FIELD, "");
+                    operations.expire(key, CACHE_NULL_TTL, TimeUnit.MINUTES);
+                    return null;
+                }
+            });
+            return null;
+        }
+        // 6.存在，写入redis
+        this.setHash(key, r, time, unit);
+        return r;
+    }
+
+    /**
+     * 方法 5：批量查询 Hash 缓存。一次管道 HGETALL 所有 key，未命中的 id 一次回源数据库，
+     * 再一次管道写回（数据库中不存在的 id 写入空值）。
+     * 返回的对象每次都是新建的，不与缓存共享，调用方可以直接修改（如填充距离）
+     * @param keyPrefix
+     * @param ids
+     * @param type
+     * @param idGetter 从对象中取出 id，用于把数据库结果对应回 id
+     * @param dbFallback 批量查询数据库，如 listByIds
+     * @param time
+     * @param unit
+     * @return id -> 对象，迭代顺序与 ids 一致，不存在的 id 不在结果中
+     * @param <R>
+     * @param <ID>
+     */
+    public <R, ID> Map<ID, R> queryHashBatchWithPassThrough(
+            String keyPrefix, Collection<ID> ids, Class<R> type, Function<R, ID> idGetter,
+            Function<Collection<ID>, List<R>> dbFallback, Long time, TimeUnit unit) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        CacheStats.Metrics metrics = cacheStats.of(keyPrefix, CacheStats.HASH);
+        List<ID> idList = new ArrayList<>(ids);
+        List<String> keys = new ArrayList<>(idList.size());
+        for (ID id : idList) {
+            keys.add(buildKey(keyPrefix, id));
+        }
+        // 1.一次管道查询所有Hash缓存
+        List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (String key : keys) {
+                    operations.opsForHash().entries(key);
+                }
+                return null;
+            }
+        });
+
+        // 2.区分命中、空值和未命中
+        Map<ID, R> found = new HashMap<>(idList.size());
+        List<ID> misses = new ArrayList<>();
+        for (int i = 0; i < idList.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<Object, Object> entries = (Map<Object, Object>) results.get(i);
+            if (entries == null || entries.isEmpty()) {
+                misses.add(idList.get(i));
+            } else if (entries.containsKey(CACHE_NULL_FIELD)) {
+                metrics.nullHits.increment();
+            } else {
+                metrics.hits.increment();
+                found.put(idList.get(i), BeanUtil.fillBeanWithMap(entries, newInstance(type), false));
+            }
+        }
+
+        // 3.未命中的id一次回源数据库，一次管道写回
+        if (!misses.isEmpty()) {
+            metrics.misses.add(misses.size());
+            List<R> list = loadFromDb(metrics, dbFallback, misses);
+            Map<ID, R> loaded = new HashMap<>(misses.size());
+            for (R r : list) {
+                loaded.put(idGetter.apply(r), r);
+            }
+            found.putAll(loaded);
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    for (ID id : misses) {
+                        String key = buildKey(keyPrefix, id);
+                        R r = loaded.get(id);
+                        if (r == null) {
+                            // 数据库中不存在，写入空值
+                            operations.opsForHash().put(key, CACHE_NULL_FIELD, "");
+                            operations.expire(key, CACHE_NULL_TTL, TimeUnit.MINUTES);
+                        } else {
+                            operations.delete(key);
+                            operations.opsForHash().putAll(key, toFieldMap(r));
+                            operations.expire(key, time, unit);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        // 4.按传入的id顺序返回
+        Map<ID, R> result = new LinkedHashMap<>(found.size() * 2);
+        for (ID id : idList) {
+            R r = found.get(id);
+            if (r != null) {
+                result.put(id, r);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 以 Hash 结构整体写入对象（覆盖原有字段）
+     */
+    public void setHash(String key, Object value, Long time, TimeUnit unit) {
+        setHashBatch(Collections.singletonMap(key, value), time, unit);
+    }
+
+    /**
+     * 批量以 Hash 结构写入对象，一次管道提交
+     * @param data key -> 对象
+     */
+    public void setHashBatch(Map<String, ?> data, Long time, TimeUnit unit) {
+        if (data.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                data.forEach((key, value) -> {
+                    operations.delete(key);
+                    operations.opsForHash().putAll(key, toFieldMap(value));
+                    operations.expire(key, time, unit);
+                });
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 按字段更新 Hash 缓存：只写入 value 中不为 null 的属性，缓存不存在时不做任何事
+     * @param key 缓存 key
+     * @param value 只包含变化字段的对象
+     * @return true 缓存存在并已更新；false 缓存不存在
+     */
+    public boolean updateHashFields(String key, Object value) {
+        Map<String, String> fields = toFieldMap(value);
+        if (fields.isEmpty()) {
+            return false;
+        }
+        List<String> args = new ArrayList<>(fields.size() * 2);
+        fields.forEach((field, fieldValue) -> {
+            args.add(field);
+            args.add(fieldValue);
+        });
+        Long result = stringRedisTemplate.execute(
+                HASH_UPDATE_SCRIPT, Collections.singletonList(key), args.toArray());
+        return result != null && result == 1L;
+    }
+
+    /**
+     * 对象转为 Hash 字段：忽略 null 值，所有值转为字符串
+     */
+    private static Map<String, String> toFieldMap(Object value) {
+        Map<String, Object> map = BeanUtil.beanToMap(value, new HashMap<>(), CopyOptions.create()
+                .setIgnoreNullValue(true)
+                .setFieldValueEditor((fieldName, fieldValue) -> fieldValue == null ? null : fieldValue.toString()));
+        Map<String, String> fields = new HashMap<>(map.size());
+        map.forEach((field, fieldValue) -> {
+            if (fieldValue != null) {
+                fields.put(field, fieldValue.toString());
+            }
+        });
+        return fields;
+    }
+
+    private static <R> R newInstance(Class<R> type) {
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 拼接带命名空间版本的缓存 key。版本为 0 时与旧格式 keyPrefix + id 保持一致，
+     * 升级版本后变为 keyPrefix + "v{version}:" + id，旧版本的 key 不再被读取，靠 TTL 自然过期
+     * @param keyPrefix 命名空间，如 cache:shop:hash:
+     * @param id
+     */
+    public String buildKey(String keyPrefix, Object id) {
+        long version = namespaceVersion(keyPrefix);
+        return version == 0 ? keyPrefix + id : keyPrefix + "v" + version + ":" + id;
+    }
+
+    /**
+     * 获取命名空间当前版本：优先读取本地副本，首次使用时从 Redis 加载
+     */
+    public long namespaceVersion(String keyPrefix) {
+        Long version = namespaceVersions.get(keyPrefix);
+        if (version != null) {
+            return version;
+        }
+        String value = stringRedisTemplate.opsForValue().get(CACHE_VERSION_KEY + keyPrefix);
+        version = value == null ? 0L : Long.parseLong(value);
+        Long previous = namespaceVersions.putIfAbsent(keyPrefix, version);
+        return previous == null ? version : previous;
+    }
+
+    /**
+     * 升级命名空间版本：O(1) 使整个命名空间的缓存失效，无需 SCAN + DEL
+     * @param keyPrefix 命名空间
+     * @return 新版本号
+     */
+    public long bumpVersion(String keyPrefix) {
+        Long version = stringRedisTemplate.opsForValue().increment(CACHE_VERSION_KEY + keyPrefix);
+        namespaceVersions.merge(keyPrefix, version, Math::max);
+        return version;
+    }
+
+    /**
+     * 定时刷新本地版本副本：所有命名空间一次 MGET，其他节点升级的版本在一个周期内生效
+     */
+    @Scheduled(fixedDelayString = "${hmdp.cache.version-refresh-ms:1000}")
+    public void refreshVersions() {
+        if (namespaceVersions.isEmpty()) {
+            return;
+        }
+        List<String> prefixes = new ArrayList<>(namespaceVersions.keySet());
+        List<String> keys = new ArrayList<>(prefixes.size());
+        for (String prefix : prefixes) {
+            keys.add(CACHE_VERSION_KEY + prefix);
+        }
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return;
+        }
+        for (int i = 0; i < prefixes.size(); i++) {
+            String value = values.get(i);
+            namespaceVersions.put(prefixes.get(i), value == null ? 0L : Long.parseLong(value));
+        }
+    }
+
+    public Map<String, Long> namespaceVersions() {
+        return Collections.unmodifiableMap(namespaceVersions);
+    }
+
+    /**
+     * 读取缓存原文：自动识别并解压压缩过的值
+     * @return 不存在返回 null；数据损坏时删除该 key 并按未命中处理，由调用方重建
+     */
+    public String getRaw(String key) {
+        byte[] bytes = stringRedisTemplate.execute(
+                (RedisCallback<byte[]>) connection -> connection.stringCommands().get(toBytes(key)));
+        try {
+            return CacheCodec.decode(bytes);
+        } catch (IllegalStateException e) {
+            log.warn("缓存数据损坏，按未命中处理，key={}", key, e);
+            stringRedisTemplate.delete(key);
+            return null;
+        }
+    }
+
+    /**
+     * 批量修改逻辑过期缓存中数据对象的部分字段：一次管道读取，修改后一次管道写回，保留原有的逻辑过期时间和 TTL。
+     * 写回使用 SET XX，期间被删除的 key 不会被重新写入；不存在、缓存空值或数据损坏的 key 不处理
+     * @param patches key -> 要修改的字段和值
+     */
+    public void patchWithLogicalExpire(Map<String, Map<String, Object>> patches) {
+        if (patches.isEmpty()) {
+            return;
+        }
+        // 1. 管道读取原文，按字节返回，由 CacheCodec 解压
+        List<String> keys = new ArrayList<>(patches.keySet());
+        List<Object> values = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.stringCommands().get(toBytes(key));
+            }
+            return null;
+        }, RedisSerializer.byteArray());
+
+        // 2. 修改数据对象的字段
+        Map<String, byte[]> updates = new LinkedHashMap<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            String json;
+            try {
+                json = CacheCodec.decode((byte[]) values.get(i));
+            } catch (IllegalStateException e) {
+                // 损坏的数据留给下次读取时删除并重建
+                continue;
+            }
+            if (StrUtil.isBlank(json)) {
+                continue;
+            }
+            JSONObject redisData = JSONUtil.parseObj(json);
+            JSONObject data = redisData.getJSONObject("data");
+            if (data == null) {
+                continue;
+            }
+            patches.get(keys.get(i)).forEach(data::set);
+            redisData.set("data", data);
+            updates.put(keys.get(i), CacheCodec.encode(redisData.toString(), compressThreshold));
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        // 3. 管道写回：SET key value KEEPTTL XX
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            updates.forEach((key, bytes) -> connection.stringCommands().set(toBytes(key), bytes,
+                    Expiration.keepTtl(), RedisStringCommands.SetOption.SET_IF_PRESENT));
+            return null;
+        });
+    }
+
+    /**
+     * 写入缓存原文：超过阈值时压缩
+     * @param time 为 null 表示不设置过期时间
+     */
+    public void setRaw(String key, String value, Long time, TimeUnit unit) {
+        byte[] bytes = CacheCodec.encode(value, compressThreshold);
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            if (time == null) {
+                connection.stringCommands().set(toBytes(key), bytes);
+            } else {
+                connection.stringCommands().set(toBytes(key), bytes,
+                        Expiration.from(time, unit), RedisStringCommands.SetOption.UPSERT);
+            }
+            return null;
+        });
+    }
+
+    private static byte[] toBytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 回源数据库，并记录耗时
+     */
+    private <R, ID> R loadFromDb(CacheStats.Metrics metrics, Function<ID, R> dbFallback, ID id) {
+        long begin = System.nanoTime();
+        try {
+            return dbFallback.apply(id);
+        } finally {
+            metrics.dbLoad.record(System.nanoTime() - begin);
+        }
+    }
+
     private boolean tryLock(String key) {
         Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
         return BooleanUtil.isTrue(flag);
@@ -0,0 +1,80 @@
+package com.hmdp.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @Description: 缓存值编解码
+ * 超过阈值的值使用 Deflate（最快压缩级别）压缩，并在首字节写入标记 0x00；
+ * JSON 文本不可能以 0x00 开头，所以没有标记的值按原始 UTF-8 文本读取，兼容压缩上线之前写入的缓存
+ */
+public class CacheCodec {
+
+    public static final byte COMPRESSED_MARKER = 0x00;
+
+    /**
+     * 编码：小于阈值或压缩后没有变小时保持原文
+     * @param value 缓存的字符串（通常是 JSON）
+     * @param threshold 压缩阈值（字节），小于等于 0 表示不压缩
+     */
+    public static byte[] encode(String value, int threshold) {
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        if (threshold <= 0 || raw.length < threshold) {
+            return raw;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            out.write(COMPRESSED_MARKER);
+            byte[] buf = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            // 压缩收益不足时直接存原文
+            return out.size() < raw.length ? out.toByteArray() : raw;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 解码：根据首字节判断是否需要解压
+     * @throws IllegalStateException 压缩数据被截断或损坏
+     */
+    public static String decode(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length == 0 || bytes[0] != COMPRESSED_MARKER) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes, 1, bytes.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buf = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                out.write(buf, 0, n);
+            }
+            // 输入已经耗尽但没有读到结束块，说明数据被截断，不能返回一半的文本
+            if (!inflater.finished()) {
+                throw new IllegalStateException("缓存数据不完整");
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("缓存数据解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.hmdp.utils;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Description: 缓存命中率统计，按 keyPrefix + 策略分别计数
+ * 计数器使用 LongAdder（内部分段累加），高并发下几乎没有竞争开销
+ */
+@Component
+public class CacheStats {
+
+    public static final String PASS_THROUGH = "passThrough";
+    public static final String LOGICAL_EXPIRE = "logicalExpire";
+    public static final String MUTEX = "mutex";
+    public static final String HASH = "hash";
+
+    private final Map<String, Metrics> metricsMap = new ConcurrentHashMap<>();
+
+    // 缓存重建线程池，用于统计重建队列深度
+    private volatile ThreadPoolExecutor rebuildExecutor;
+
+    /**
+     * 获取某个 keyPrefix 在某种策略下的统计项，不存在则创建
+     */
+    public Metrics of(String keyPrefix, String strategy) {
+        return metricsMap.computeIfAbsent(keyPrefix + "|" + strategy, k -> new Metrics());
+    }
+
+    public void bindRebuildExecutor(ThreadPoolExecutor executor) {
+        this.rebuildExecutor = executor;
+    }
+
+    /**
+     * 导出当前统计快照：keyPrefix -> 策略 -> 指标
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> prefixes = new TreeMap<>();
+        metricsMap.forEach((k, metrics) -> {
+            int i = k.lastIndexOf('|');
+            @SuppressWarnings("unchecked")
+            Map<String, Object> strategies = (Map<String, Object>) prefixes
+                    .computeIfAbsent(k.substring(0, i), p -> new TreeMap<String, Object>());
+            strategies.put(k.substring(i + 1), metrics.toMap());
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("prefixes", prefixes);
+        ThreadPoolExecutor executor = rebuildExecutor;
+        if (executor != null) {
+            Map<String, Object> rebuild = new LinkedHashMap<>();
+            rebuild.put("queueDepth", executor.getQueue().size());
+            rebuild.put("activeThreads", executor.getActiveCount());
+            rebuild.put("completedTasks", executor.getCompletedTaskCount());
+            result.put("rebuildExecutor", rebuild);
+        }
+        return result;
+    }
+
+    public void reset() {
+        metricsMap.clear();
+    }
+
+    public static class Metrics {
+        // 命中有效数据
+        public final LongAdder hits = new LongAdder();
+        // 命中缓存穿透写入的空值
+        public final LongAdder nullHits = new LongAdder();
+        // 未命中，需要查询数据库
+        public final LongAdder misses = new LongAdder();
+        // 逻辑过期：命中了已过期的数据
+        public final LongAdder expiredHits = new LongAdder();
+        // 获取互斥锁失败的次数（锁竞争）
+        public final LongAdder lockFailures = new LongAdder();
+        // 提交到重建线程池的次数
+        public final LongAdder rebuilds = new LongAdder();
+        // 数据库回源耗时
+        public final LatencyHistogram dbLoad = new LatencyHistogram();
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long hit = hits.sum();
+            long nullHit = nullHits.sum();
+            long miss = misses.sum();
+            long expired = expiredHits.sum();
+            long total = hit + nullHit + miss + expired;
+            map.put("hits", hit);
+            map.put("nullHits", nullHit);
+            map.put("misses", miss);
+            map.put("expiredHits", expired);
+            map.put("hitRate", total == 0 ? 0D : (double) (hit + nullHit + expired) / total);
+            map.put("lockFailures", lockFailures.sum());
+            map.put("rebuilds", rebuilds.sum());
+            map.put("dbLoad", dbLoad.toMap());
+            return map;
+        }
+    }
+
+    /**
+     * 固定桶的延迟直方图（单位 ms），每个桶一个 LongAdder
+     */
+    public static class LatencyHistogram {
+        private static final long[] BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000};
+
+        private final LongAdder[] buckets = new LongAdder[BOUNDS_MS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        public LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long nanos) {
+            long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int i = 0;
+            while (i < BOUNDS_MS.length && ms > BOUNDS_MS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long n = count.sum();
+            map.put("count", n);
+            map.put("avgMs", n == 0 ? 0D : totalNanos.sum() / 1e6 / n);
+            Map<String, Long> histogram = new LinkedHashMap<>();
+            for (int i = 0; i < BOUNDS_MS.length; i++) {
+                histogram.put("le" + BOUNDS_MS[i], buckets[i].sum());
+            }
+            histogram.put("inf", buckets[BOUNDS_MS.length].sum());
+            map.put("buckets", histogram);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @Description: 不透明游标的编解码：多个字段以 ',' 拼接后做 URL 安全的 Base64
+ * 客户端只需原样回传，不依赖游标的内部结构。游标可能被篡改，解码和读取字段时统一校验格式和取值范围，
+ * 不合法时抛出 IllegalArgumentException，调用方捕获后返回“无效的游标”
+ */
+public class CursorUtils {
+
+    public static String encode(Object... parts) {
+        return Base64.encodeUrlSafe(StrUtil.join(",", parts));
+    }
+
+    /**
+     * 解析游标
+     * @param cursor 客户端回传的游标
+     * @param size 期望的字段个数
+     * @return 游标字段
+     * @throws IllegalArgumentException 游标为空、不是合法的 Base64 或字段个数不对
+     */
+    public static Cursor decode(String cursor, int size) {
+        if (StrUtil.isBlank(cursor)) {
+            throw new IllegalArgumentException("游标为空");
+        }
+        String[] parts;
+        try {
+            parts = Base64.decodeStr(cursor, StandardCharsets.UTF_8).split(",", -1);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("游标不是合法的 Base64", e);
+        }
+        if (parts.length != size) {
+            throw new IllegalArgumentException("游标字段个数不对");
+        }
+        return new Cursor(parts);
+    }
+
+    /**
+     * 解码后的游标字段，按下标读取并校验取值范围
+     */
+    public static class Cursor {
+
+        private final String[] parts;
+
+        private Cursor(String[] parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * @throws IllegalArgumentException 不是整数或不在 [min, max] 范围内
+         */
+        public long getLong(int index, long min, long max) {
+            long value = Long.parseLong(parts[index]);
+            if (value < min || value > max) {
+                throw new IllegalArgumentException("游标字段超出范围：" + value);
+            }
+            return value;
+        }
+
+        /**
+         * @throws IllegalArgumentException 不是整数或不在 [min, max] 范围内
+         */
+        public int getInt(int index, int min, int max) {
+            return (int) getLong(index, min, max);
+        }
+
+        /**
+         * @throws IllegalArgumentException 不是数字、不是有限值（NaN、Infinity）或不在 [min, max] 范围内
+         */
+        public double getDouble(int index, double min, double max) {
+            double value = Double.parseDouble(parts[index]);
+            if (Double.isNaN(value) || Double.isInfinite(value) || value < min || value > max) {
+                throw new IllegalArgumentException("游标字段超出范围：" + value);
+            }
+            return value;
+        }
+    }
+}
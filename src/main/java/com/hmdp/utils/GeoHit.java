@@ -0,0 +1,14 @@
+package com.hmdp.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * @Description: 附近查询的结果：店铺 id 与距离
+ */
+@Data
+@AllArgsConstructor
+public class GeoHit {
+    private Long id;
+    private Double distance; // 米
+}
@@ -0,0 +1,21 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @Description: 附近查询的瓦片缓存：以 geohash 网格中心为圆心查出的候选店铺。
+ * 同一网格内的请求共用一个瓦片，各自按到请求坐标的精确距离重新排序
+ */
+@Data
+public class GeoTile {
+    // 网格中心
+    private Double x;
+    private Double y;
+    // 候选店铺（按到网格中心的距离升序）
+    private List<Shop> shops;
+    // 完整覆盖的半径（米）：到网格中心距离小于该值的店铺全部在 shops 中。候选数量被截断时小于查询半径
+    private Double covered;
+}
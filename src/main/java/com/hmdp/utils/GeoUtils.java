@@ -0,0 +1,169 @@
+package com.hmdp.utils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @Description: 地理坐标计算工具
+ */
+public class GeoUtils {
+
+    // 与 Redis GEO 使用相同的地球半径（米），保证本地计算的距离与 GEOSEARCH 一致
+    public static final double EARTH_RADIUS = 6372797.560856;
+
+    // 每一度纬度对应的距离（米）
+    public static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS / 180;
+
+    /**
+     * haversine 公式计算两点之间的球面距离
+     * @param x1 经度
+     * @param y1 纬度
+     * @return 距离（米）
+     */
+    public static double distance(double x1, double y1, double x2, double y2) {
+        double lat1 = Math.toRadians(y1);
+        double lat2 = Math.toRadians(y2);
+        double u = Math.sin((lat2 - lat1) / 2);
+        double v = Math.sin(Math.toRadians(x2 - x1) / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(u * u + Math.cos(lat1) * Math.cos(lat2) * v * v));
+    }
+
+    /**
+     * 某纬度上，给定距离对应的经度跨度
+     */
+    public static double lonDegrees(double meters, double y) {
+        double cos = Math.cos(Math.toRadians(y));
+        // 极点附近避免除以 0
+        return cos < 1e-6 ? 360 : meters / (METERS_PER_DEGREE * cos);
+    }
+
+    public static double latDegrees(double meters) {
+        return meters / METERS_PER_DEGREE;
+    }
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    /**
+     * 计算 geohash：经度、纬度交替二分，每 5 位编码为一个 base32 字符
+     * @param x 经度
+     * @param y 纬度
+     * @param precision 字符数，6 位约为 1.2 km × 0.6 km 的网格
+     */
+    public static String geohash(double x, double y, int precision) {
+        double minX = -180, maxX = 180, minY = -90, maxY = 90;
+        StringBuilder sb = new StringBuilder(precision);
+        boolean even = true;
+        int bit = 0, ch = 0;
+        while (sb.length() < precision) {
+            if (even) {
+                double mid = (minX + maxX) / 2;
+                if (x >= mid) {
+                    ch = (ch << 1) | 1;
+                    minX = mid;
+                } else {
+                    ch <<= 1;
+                    maxX = mid;
+                }
+            } else {
+                double mid = (minY + maxY) / 2;
+                if (y >= mid) {
+                    ch = (ch << 1) | 1;
+                    minY = mid;
+                } else {
+                    ch <<= 1;
+                    maxY = mid;
+                }
+            }
+            even = !even;
+            if (++bit == 5) {
+                sb.append(BASE32.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 解码 geohash 对应的网格范围
+     * @return {最小经度, 最小纬度, 最大经度, 最大纬度}
+     */
+    public static double[] geohashBox(String hash) {
+        double minX = -180, maxX = 180, minY = -90, maxY = 90;
+        boolean even = true;
+        for (int i = 0; i < hash.length(); i++) {
+            int ch = BASE32.indexOf(hash.charAt(i));
+            for (int mask = 16; mask > 0; mask >>= 1) {
+                boolean high = (ch & mask) != 0;
+                if (even) {
+                    double mid = (minX + maxX) / 2;
+                    if (high) {
+                        minX = mid;
+                    } else {
+                        maxX = mid;
+                    }
+                } else {
+                    double mid = (minY + maxY) / 2;
+                    if (high) {
+                        minY = mid;
+                    } else {
+                        maxY = mid;
+                    }
+                }
+                even = !even;
+            }
+        }
+        return new double[]{minX, minY, maxX, maxY};
+    }
+
+    /**
+     * 网格中心到最远角的距离（米）。高纬度一侧的角更近，取上下两个角中较远的
+     * @param box {最小经度, 最小纬度, 最大经度, 最大纬度}
+     */
+    public static double halfDiagonal(double[] box) {
+        double cx = (box[0] + box[2]) / 2;
+        double cy = (box[1] + box[3]) / 2;
+        return Math.max(distance(cx, cy, box[2], box[3]), distance(cx, cy, box[2], box[1]));
+    }
+
+    /**
+     * 查询与某点距离不超过 meters 的全部 geohash 网格：网格中心到该点的距离不超过 meters + 网格半对角线。
+     * 以该点所在网格为起点，按网格宽高向四周枚举候选网格中心
+     * @param x 经度
+     * @param y 纬度
+     * @param meters 距离（米）
+     * @param precision geohash 字符数
+     */
+    public static Set<String> geohashesWithin(double x, double y, double meters, int precision) {
+        double[] box = geohashBox(geohash(x, y, precision));
+        double w = box[2] - box[0];
+        double h = box[3] - box[1];
+        double cx = (box[0] + box[2]) / 2;
+        double cy = (box[1] + box[3]) / 2;
+        // 纬度方向按距离换算；经度方向按范围内纬度最高处（经度跨度最大）换算，且不超过半圈
+        int ny = (int) Math.ceil(latDegrees(meters) / h) + 1;
+        double farLat = Math.min(90, Math.abs(y) + latDegrees(meters) + h);
+        int nx = (int) Math.min(Math.ceil(lonDegrees(meters, farLat) / w) + 1, Math.ceil(180 / w));
+        Set<String> hashes = new HashSet<>();
+        for (int j = -ny; j <= ny; j++) {
+            double py = cy + j * h;
+            if (py <= -90 || py >= 90) {
+                continue;
+            }
+            for (int i = -nx; i <= nx; i++) {
+                double px = cx + i * w;
+                // 跨越 180° 经线
+                if (px >= 180) {
+                    px -= 360;
+                } else if (px < -180) {
+                    px += 360;
+                }
+                double[] cell = {px - w / 2, py - h / 2, px + w / 2, py + h / 2};
+                if (distance(x, y, px, py) <= meters + halfDiagonal(cell)) {
+                    hashes.add(geohash(px, py, precision));
+                }
+            }
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,98 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.time.LocalDateTime;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @Description: 营业时间解析：把 "10:00-22:00"、"11:30-03:00"（跨夜）、"11:00-13:50,17:00-20:50"（多段）、
+ * "全天"、"24小时" 这样的文本解析为一周的位图，每 10 分钟一位，共 7 × 144 = 1008 位（16 个 long）。
+ * 判断某一时刻是否营业只需要一次位运算
+ */
+public class OpenHours {
+
+    public static final int SLOT_MINUTES = 10;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int SLOTS = 7 * MINUTES_PER_DAY / SLOT_MINUTES;
+
+    // HH:mm-HH:mm，兼容全角冒号以及 ~、至 等分隔符
+    private static final Pattern RANGE = Pattern.compile(
+            "(\\d{1,2})[:：](\\d{2})\\s*[-~－—至到]+\\s*(\\d{1,2})[:：](\\d{2})");
+
+    // 全天营业的写法
+    private static final Pattern ALL_DAY = Pattern.compile("全天|24\\s*小时|24\\s*[hH]");
+
+    /**
+     * 解析营业时间。文本中没有星期信息，每一段时间对每一天都生效；
+     * 结束时间不晚于开始时间视为跨夜，营业到次日（周日跨夜到周一）
+     * @param text 营业时间文本
+     * @return 一周的位图，无法解析时返回 null
+     */
+    public static long[] parse(String text) {
+        if (StrUtil.isBlank(text)) {
+            return null;
+        }
+        long[] bits = new long[(SLOTS + 63) / 64];
+        if (ALL_DAY.matcher(text).find()) {
+            mark(bits, 0, SLOTS * SLOT_MINUTES);
+            return bits;
+        }
+        boolean found = false;
+        Matcher matcher = RANGE.matcher(text);
+        while (matcher.find()) {
+            int start = toMinutes(matcher.group(1), matcher.group(2));
+            int end = toMinutes(matcher.group(3), matcher.group(4));
+            if (start < 0 || end < 0) {
+                continue;
+            }
+            if (end <= start) {
+                // 跨夜；开始等于结束视为全天营业
+                end += MINUTES_PER_DAY;
+            }
+            for (int day = 0; day < 7; day++) {
+                mark(bits, day * MINUTES_PER_DAY + start, day * MINUTES_PER_DAY + end);
+            }
+            found = true;
+        }
+        return found ? bits : null;
+    }
+
+    /**
+     * 某一时刻所在的时间片（周一 00:00 为 0）
+     */
+    public static int slotOf(LocalDateTime time) {
+        int day = time.getDayOfWeek().getValue() - 1;
+        return (day * MINUTES_PER_DAY + time.getHour() * 60 + time.getMinute()) / SLOT_MINUTES;
+    }
+
+    public static boolean isOpen(long[] bits, int slot) {
+        return bits != null && (bits[slot >>> 6] & (1L << (slot & 63))) != 0;
+    }
+
+    /**
+     * 标记 [from, to) 分钟内的时间片。只标记被完整覆盖的时间片，宁可少报营业中也不误报；
+     * 超出周日 24:00 的部分回到周一
+     */
+    private static void mark(long[] bits, int from, int to) {
+        int first = (from + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        int last = to / SLOT_MINUTES;
+        for (int s = first; s < last; s++) {
+            int slot = s % SLOTS;
+            bits[slot >>> 6] |= 1L << (slot & 63);
+        }
+    }
+
+    /**
+     * 转为当天的分钟数，24:00 合法，非法时间返回 -1
+     */
+    private static int toMinutes(String hour, String minute) {
+        int h = Integer.parseInt(hour);
+        int m = Integer.parseInt(minute);
+        if (m > 59 || h > 24 || (h == 24 && m > 0)) {
+            return -1;
+        }
+        return h * 60 + m;
+    }
+}
@@ -7,21 +7,63 @@ public class RedisConstants {
     public static final Long LOGIN_USER_TTL = 30L; // token 有效期
 
     public static final Long CACHE_NULL_TTL = 2L;
+    public static final String CACHE_NULL_FIELD = "_null"; // Hash 缓存的空值标记字段
+    public static final String CACHE_VERSION_KEY = "cache:version:"; // 缓存命名空间版本号
+    public static final Long CACHE_LOGICAL_EXPIRE_GRACE = 86400L; // 逻辑过期缓存的物理过期宽限（秒）
 
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
+    public static final String CACHE_SHOP_HASH_KEY = "cache:shop:hash:"; // Hash 结构的店铺缓存
+    public static final String CACHE_GEO_TILE_KEY = "cache:geo:tile:"; // 附近查询的瓦片缓存，cache:geo:tile:{typeId}:{geohash}
+    public static final Long CACHE_GEO_TILE_TTL = 60L; // 秒
+
+    public static final String CACHE_BLOG_KEY = "cache:blog:"; // 笔记详情（含作者昵称、头像）的逻辑过期缓存
+    public static final Long CACHE_BLOG_TTL = 10L;
+    public static final String CACHE_BLOG_COMMENTS_KEY = "cache:blog:comments:"; // 笔记评论首页（含前几条回复）
+    public static final Long CACHE_BLOG_COMMENTS_TTL = 5L;
+    public static final String CACHE_USER_KEY = "cache:user:"; // 用户公开信息（UserDTO）的 Hash 缓存
+    public static final Long CACHE_USER_TTL = 30L;
 
     public static final Long CACHE_SHOP_TYPE_KEY_TTL = 30L;
     public static final String CACHE_SHOP_TYPE_KEY = "cache:typelist:";
+    public static final String SHOP_TYPE_VERSION_KEY = "shop:type:version"; // 店铺类型数据版本号，修改 tb_shop_type 后递增
+    public static final String SHOP_TYPE_CHANNEL = "shop:type:changed"; // 店铺类型变更通知频道，消息为新的版本号
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    public static final String LOCK_CACHE_KEY = "lock:"; // 缓存重建锁，lock:{缓存 key}，不同命名空间的同一 id 互不影响
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
+    public static final String BLOG_LIKED_PENDING_KEY = "blog:liked:pending"; // 尚未写回 tb_blog 的点赞数增量，blogId -> 增量
+    public static final String BLOG_LIKED_FLUSHING_KEY = "blog:liked:flushing"; // 正在写回的一批增量，字段 _batch 为批次号，写完后删除
+    public static final String BLOG_LIKED_BATCH_KEY = "blog:liked:batch"; // 点赞数写回的批次号，递增
+    public static final String LOCK_BLOG_LIKE_FLUSH_KEY = "lock:blog:like:flush";
+    public static final String BLOG_HOT_KEY = "blog:hot"; // 热门笔记排行，score = 点赞数 + 发布时间（秒）/ 一个赞相当的秒数
+    public static final String LOCK_BLOG_HOT_REBUILD_KEY = "lock:blog:hot:rebuild";
+    public static final String BLOG_HOT_REBUILD_KEY = "blog:hot:rebuilding"; // 重建热门笔记排行时的临时 key
+    public static final int BLOG_HOT_MAX = 1000; // 热门笔记排行保留的笔记数量
+    public static final int BLOG_REBUILD_BATCH = 1000; // 重建热门笔记排行时每批读取的笔记数量
     public static final String COMMON_FOLLOW_KEY = "follows:";
 
     public static final String FEED_KEY = "feed:";
+    public static final String FEED_INBOX_PLACEHOLDER = "-"; // 收件箱占位元素（score 为 +inf），使没有笔记的收件箱也存在，避免反复重建
+    public static final String FEED_STREAM_KEY = "stream.feed"; // 笔记推送任务队列
+    public static final String FEED_STREAM_GROUP = "g1";
+    public static final String FEED_FANOUT_KEY = "feed:fanout:"; // 推送任务进度（已推送到的 tb_follow.id），重试时从该位置继续
+    public static final Long FEED_FANOUT_TTL = 1L; // 天
+    public static final int FEED_FANOUT_BATCH = 1000; // 推送时每批读取的粉丝数量
+    public static final String FEED_OUTBOX_KEY = "feed:outbox:"; // 作者发件箱，feed:outbox:{authorId}，blogId -> 发布时间戳
+    public static final int FEED_OUTBOX_MAX = 1000; // 每个作者发件箱保留的最近笔记数量
+    public static final String FEED_BIG_AUTHORS_KEY = "feed:big:authors"; // 粉丝数超过阈值、不再推送的作者
     public static final String SHOP_GEO_KEY = "shop:geo:";
+    public static final String SHOP_GEO_REBUILD_SUFFIX = ":rebuilding"; // 重建 GEO 数据时的临时 key 后缀
+    public static final String LOCK_SHOP_GEO_REBUILD_KEY = "lock:shop:geo:rebuild"; // 同一时间只有一个节点重建 GEO 数据
+    public static final String SHOP_GEO_REBUILD_RUNNING_KEY = "shop:geo:rebuild:running"; // GEO 数据正在重建的标记
+    public static final Long SHOP_GEO_REBUILD_RUNNING_TTL = 5L; // 分钟，每写入一批续期，重建节点宕机后自动清除
+    public static final String SHOP_GEO_REBUILD_CHANGES_KEY = "shop:geo:rebuild:changes"; // 重建期间修改的店铺，id -> "typeId,x,y"，删除为空串
+    public static final int SHOP_REBUILD_BATCH = 1000; // 重建 GEO 数据、名称索引时每批读取的店铺数量
     public static final String USER_SIGN_KEY = "sign:";
+    public static final String UPLOAD_REF_KEY = "upload:ref:"; // 图片引用，upload:ref:{sha256}，上传者 id -> 引用次数
+    public static final String LOCK_UPLOAD_KEY = "lock:upload:";
 }
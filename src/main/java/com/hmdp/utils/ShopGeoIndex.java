@@ -0,0 +1,243 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+/**
+ * @Description: 进程内的店铺空间索引，按 typeId 分区，每个分区是一张经纬度网格
+ * 附近查询只需扫描覆盖查询半径的网格，在 JVM 内完成距离计算与排序，不需要访问 Redis。
+ * 读操作无锁：每个网格保存不可变数组，写操作（加载、新增、修改、删除）串行执行并整体替换网格数组
+ */
+@Component
+public class ShopGeoIndex {
+
+    // 网格边长（度），约 1.1 km
+    private static final double CELL_DEGREES = 0.01;
+
+    @Value("${hmdp.shop.local-geo.enabled:false}")
+    private boolean enabled;
+
+    private volatile Holder holder = new Holder();
+
+    // 是否已完成全量加载，加载完成之前查询仍走 Redis GEO
+    private volatile boolean ready;
+
+    // 全量加载期间的修改：id -> 修改后的店铺（删除为 null），替换索引之后重放，不被加载时读取的旧数据覆盖
+    private Map<Long, Shop> pending;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * 开始全量加载，必须在读取数据库之前调用：此后的修改会在 load 替换索引之后重放
+     */
+    public synchronized void beginLoad() {
+        pending = new HashMap<>();
+    }
+
+    /**
+     * 放弃全量加载，不再记录修改
+     */
+    public synchronized void abortLoad() {
+        pending = null;
+    }
+
+    /**
+     * 全量加载：构建新的索引后整体替换，再重放 beginLoad 之后的修改
+     * @param shops 至少包含 id、typeId、x、y
+     */
+    public synchronized void load(Collection<Shop> shops) {
+        Holder fresh = new Holder();
+        for (Shop shop : shops) {
+            fresh.add(toEntry(shop));
+        }
+        if (pending != null) {
+            pending.forEach((id, shop) -> {
+                fresh.remove(id);
+                if (shop != null) {
+                    fresh.add(toEntry(shop));
+                }
+            });
+            pending = null;
+        }
+        holder = fresh;
+        ready = true;
+    }
+
+    /**
+     * 新增或修改店铺：先移除旧位置，再写入新位置（类型或坐标可能都变了）
+     */
+    public synchronized void put(Shop shop) {
+        Entry entry = toEntry(shop);
+        if (entry == null) {
+            return;
+        }
+        Holder h = holder;
+        h.remove(shop.getId());
+        h.add(entry);
+        if (pending != null) {
+            pending.put(entry.id, shop);
+        }
+    }
+
+    public synchronized void remove(Long shopId) {
+        holder.remove(shopId);
+        if (pending != null) {
+            pending.put(shopId, null);
+        }
+    }
+
+    /**
+     * 查询某类型下半径内的店铺，按距离升序（距离相同按 id 升序），从游标位置继续查询：只返回排在 after 之后的店铺。
+     * 整个网格都比游标距离近的网格会被直接跳过，翻页越深，需要扫描的网格越少
+     * @param typeId 店铺类型
+     * @param x 经度
+     * @param y 纬度
+     * @param radius 半径（米）
+     * @param after 上一页最后一条结果，为 null 表示从头查询
+     * @param limit 最多返回的数量
+     * @param filter 店铺 id 过滤条件（如营业中），为 null 表示不过滤
+     */
+    public List<GeoHit> searchAfter(Long typeId, double x, double y, double radius, GeoHit after, int limit, LongPredicate filter) {
+        Map<Long, Entry[]> cells = holder.partitions.get(typeId);
+        if (cells == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        // 1. 计算覆盖查询圆的网格范围
+        double dx = GeoUtils.lonDegrees(radius, y);
+        double dy = GeoUtils.latDegrees(radius);
+        long minCx = cell(x - dx), maxCx = cell(x + dx);
+        long minCy = cell(y - dy), maxCy = cell(y + dy);
+
+        // 2. 扫描网格，用大小为 limit 的大顶堆保留最近的结果
+        PriorityQueue<GeoHit> heap = new PriorityQueue<>(limit + 1, HIT_ORDER.reversed());
+        for (long cx = minCx; cx <= maxCx; cx++) {
+            for (long cy = minCy; cy <= maxCy; cy++) {
+                Entry[] entries = cells.get(cellKey(cx, cy));
+                if (entries == null) {
+                    continue;
+                }
+                // 2.1 网格内最远点也在游标之前，整个网格都已经返回过了（留 1 米余量）
+                if (after != null && maxDistance(x, y, cx, cy) + 1 < after.getDistance()) {
+                    continue;
+                }
+                for (Entry e : entries) {
+                    double d = GeoUtils.distance(x, y, e.x, e.y);
+                    if (d > radius || (filter != null && !filter.test(e.id))) {
+                        continue;
+                    }
+                    GeoHit hit = new GeoHit(e.id, d);
+                    if (after != null && HIT_ORDER.compare(hit, after) <= 0) {
+                        continue;
+                    }
+                    heap.offer(hit);
+                    if (heap.size() > limit) {
+                        heap.poll();
+                    }
+                }
+            }
+        }
+
+        // 3. 排序
+        List<GeoHit> hits = new ArrayList<>(heap);
+        hits.sort(HIT_ORDER);
+        return hits;
+    }
+
+    /**
+     * 查询点到网格四个角的最大距离
+     */
+    private static double maxDistance(double x, double y, long cx, long cy) {
+        double x1 = cx * CELL_DEGREES, x2 = x1 + CELL_DEGREES;
+        double y1 = cy * CELL_DEGREES, y2 = y1 + CELL_DEGREES;
+        return Math.max(
+                Math.max(GeoUtils.distance(x, y, x1, y1), GeoUtils.distance(x, y, x1, y2)),
+                Math.max(GeoUtils.distance(x, y, x2, y1), GeoUtils.distance(x, y, x2, y2)));
+    }
+
+    public static final Comparator<GeoHit> HIT_ORDER =
+            Comparator.comparingDouble(GeoHit::getDistance).thenComparingLong(GeoHit::getId);
+
+    private static Entry toEntry(Shop shop) {
+        if (shop.getId() == null || shop.getTypeId() == null || shop.getX() == null || shop.getY() == null) {
+            return null;
+        }
+        return new Entry(shop.getId(), shop.getTypeId(), shop.getX(), shop.getY());
+    }
+
+    private static long cell(double degrees) {
+        return (long) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(long cx, long cy) {
+        return (cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    private static class Entry {
+        final long id;
+        final long typeId;
+        final double x;
+        final double y;
+
+        Entry(long id, long typeId, double x, double y) {
+            this.id = id;
+            this.typeId = typeId;
+            this.x = x;
+            this.y = y;
+        }
+
+        long cellKey() {
+            return ShopGeoIndex.cellKey(cell(x), cell(y));
+        }
+    }
+
+    /**
+     * 索引数据：typeId -> 网格 -> 店铺数组，以及 id -> 店铺（用于移除旧位置）
+     */
+    private static class Holder {
+        final Map<Long, Map<Long, Entry[]>> partitions = new ConcurrentHashMap<>();
+        final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+
+        void add(Entry entry) {
+            if (entry == null) {
+                return;
+            }
+            byId.put(entry.id, entry);
+            partitions.computeIfAbsent(entry.typeId, k -> new ConcurrentHashMap<>())
+                    .compute(entry.cellKey(), (k, old) -> {
+                        if (old == null) {
+                            return new Entry[]{entry};
+                        }
+                        Entry[] arr = Arrays.copyOf(old, old.length + 1);
+                        arr[old.length] = entry;
+                        return arr;
+                    });
+        }
+
+        void remove(Long id) {
+            Entry entry = byId.remove(id);
+            if (entry == null) {
+                return;
+            }
+            Map<Long, Entry[]> cells = partitions.get(entry.typeId);
+            if (cells == null) {
+                return;
+            }
+            cells.computeIfPresent(entry.cellKey(), (k, old) -> {
+                Entry[] arr = Arrays.stream(old).filter(e -> e.id != entry.id).toArray(Entry[]::new);
+                // 返回 null 会移除空网格
+                return arr.length == 0 ? null : arr;
+            });
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.entity.Shop;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+
+/**
+ * @Description: 进程内的店铺名称倒排索引，对店铺名称和商圈按单字、双字（n-gram）切分，
+ * 词项 -> 有序的店铺 id 数组。查询时取关键词中最短的倒排列表作为候选，再逐个校验是否包含关键词，
+ * 不再对 tb_shop 执行 LIKE '%name%' 全表扫描。
+ * 读操作无锁：倒排列表是不可变数组，写操作串行执行并整体替换数组
+ */
+@Component
+public class ShopNameIndex {
+
+    // 排序等级：名称完全相同 > 名称前缀 > 名称包含 > 商圈包含
+    private static final int RANK_EXACT = 0;
+    private static final int RANK_PREFIX = 1;
+    private static final int RANK_NAME = 2;
+    private static final int RANK_AREA = 3;
+
+    @Value("${hmdp.shop.name-index.enabled:true}")
+    private boolean enabled;
+
+    private volatile Holder holder = new Holder();
+
+    // 是否已完成全量加载，加载完成之前查询仍走数据库
+    private volatile boolean ready;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * 全量加载：构建新的索引后整体替换
+     * @param shops 至少包含 id、name、area
+     */
+    public synchronized void load(Collection<Shop> shops) {
+        Map<String, List<Long>> postings = new HashMap<>();
+        Holder fresh = new Holder();
+        for (Shop shop : shops) {
+            Entry entry = toEntry(shop);
+            if (entry == null) {
+                continue;
+            }
+            fresh.byId.put(entry.id, entry);
+            for (String term : entry.terms()) {
+                postings.computeIfAbsent(term, k -> new ArrayList<>()).add(entry.id);
+            }
+        }
+        postings.forEach((term, ids) -> fresh.postings.put(term, ids.stream().mapToLong(Long::longValue).sorted().toArray()));
+        holder = fresh;
+        ready = true;
+    }
+
+    /**
+     * 新增或修改店铺：先移除旧的词项，再写入新的词项
+     */
+    public synchronized void put(Shop shop) {
+        Entry entry = toEntry(shop);
+        if (entry == null) {
+            return;
+        }
+        Holder h = holder;
+        h.remove(entry.id);
+        h.add(entry);
+    }
+
+    public synchronized void remove(Long shopId) {
+        holder.remove(shopId);
+    }
+
+    /**
+     * 按关键词分页查询，名称前缀匹配排在子串匹配之前，商圈匹配排在最后；同一等级内名称越短越靠前
+     * @param keyword 关键词
+     * @param from 跳过的数量
+     * @param size 返回的数量
+     * @return 排好序的店铺 id
+     */
+    public List<Long> search(String keyword, int from, int size) {
+        return search(keyword, from, size, null);
+    }
+
+    /**
+     * @param filter 店铺 id 过滤条件（如营业中），为 null 表示不过滤
+     */
+    public List<Long> search(String keyword, int from, int size, LongPredicate filter) {
+        String q = normalize(keyword);
+        if (q.isEmpty() || size <= 0) {
+            return Collections.emptyList();
+        }
+        Holder h = holder;
+        // 1. 取关键词所有词项中最短的倒排列表作为候选集
+        long[] candidates = null;
+        for (String term : queryTerms(q)) {
+            long[] ids = h.postings.get(term);
+            if (ids == null) {
+                // 任一词项不存在，不可能匹配
+                return Collections.emptyList();
+            }
+            if (candidates == null || ids.length < candidates.length) {
+                candidates = ids;
+            }
+        }
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+
+        // 2. 校验候选并打分，用大小为 from + size 的大顶堆保留排名靠前的结果
+        int limit = from + size;
+        Comparator<Hit> order = Comparator.comparingInt((Hit hit) -> hit.rank)
+                .thenComparingInt(hit -> hit.length)
+                .thenComparingLong(hit -> hit.id);
+        PriorityQueue<Hit> heap = new PriorityQueue<>(limit + 1, order.reversed());
+        for (long id : candidates) {
+            Entry e = h.byId.get(id);
+            if (e == null || (filter != null && !filter.test(id))) {
+                continue;
+            }
+            int rank = e.rank(q);
+            if (rank < 0) {
+                continue;
+            }
+            heap.offer(new Hit(id, rank, e.name.length()));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        // 3. 排序并截取当前页
+        List<Hit> hits = new ArrayList<>(heap);
+        hits.sort(order);
+        List<Long> ids = new ArrayList<>(size);
+        for (int i = from; i < hits.size(); i++) {
+            ids.add(hits.get(i).id);
+        }
+        return ids;
+    }
+
+    public int size() {
+        return holder.byId.size();
+    }
+
+    /**
+     * 关键词切分：单个字符用单字词项，否则用全部双字词项
+     */
+    private static Set<String> queryTerms(String q) {
+        if (q.length() == 1) {
+            return Collections.singleton(q);
+        }
+        Set<String> terms = new HashSet<>();
+        for (int i = 0; i + 1 < q.length(); i++) {
+            terms.add(q.substring(i, i + 2));
+        }
+        return terms;
+    }
+
+    /**
+     * 统一大小写、去掉空白，使 "KFC " 与 "kfc" 可以互相匹配
+     */
+    private static String normalize(String s) {
+        return s == null ? "" : StrUtil.cleanBlank(s).toLowerCase();
+    }
+
+    private static Entry toEntry(Shop shop) {
+        if (shop.getId() == null) {
+            return null;
+        }
+        return new Entry(shop.getId(), normalize(shop.getName()), normalize(shop.getArea()));
+    }
+
+    private static class Entry {
+        final long id;
+        final String name;
+        final String area;
+
+        Entry(long id, String name, String area) {
+            this.id = id;
+            this.name = name;
+            this.area = area;
+        }
+
+        /**
+         * 名称和商圈的全部单字、双字词项
+         */
+        Set<String> terms() {
+            Set<String> terms = new HashSet<>();
+            for (String s : new String[]{name, area}) {
+                for (int i = 0; i < s.length(); i++) {
+                    terms.add(s.substring(i, i + 1));
+                    if (i + 1 < s.length()) {
+                        terms.add(s.substring(i, i + 2));
+                    }
+                }
+            }
+            return terms;
+        }
+
+        /**
+         * 计算匹配等级，不匹配返回 -1（n-gram 候选可能只是词项都出现、但并不连续）
+         */
+        int rank(String q) {
+            if (name.equals(q)) {
+                return RANK_EXACT;
+            }
+            if (name.startsWith(q)) {
+                return RANK_PREFIX;
+            }
+            if (name.contains(q)) {
+                return RANK_NAME;
+            }
+            return area.contains(q) ? RANK_AREA : -1;
+        }
+    }
+
+    private static class Hit {
+        final long id;
+        final int rank;
+        final int length;
+
+        Hit(long id, int rank, int length) {
+            this.id = id;
+            this.rank = rank;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 索引数据：词项 -> 有序 id 数组，以及 id -> 店铺（用于移除旧词项、校验候选）
+     */
+    private static class Holder {
+        final Map<String, long[]> postings = new ConcurrentHashMap<>();
+        final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+
+        void add(Entry entry) {
+            byId.put(entry.id, entry);
+            for (String term : entry.terms()) {
+                postings.compute(term, (k, old) -> {
+                    if (old == null) {
+                        return new long[]{entry.id};
+                    }
+                    int i = Arrays.binarySearch(old, entry.id);
+                    if (i >= 0) {
+                        return old;
+                    }
+                    // 插入到有序位置
+                    int pos = -i - 1;
+                    long[] arr = new long[old.length + 1];
+                    System.arraycopy(old, 0, arr, 0, pos);
+                    arr[pos] = entry.id;
+                    System.arraycopy(old, pos, arr, pos + 1, old.length - pos);
+                    return arr;
+                });
+            }
+        }
+
+        void remove(long id) {
+            Entry entry = byId.remove(id);
+            if (entry == null) {
+                return;
+            }
+            for (String term : entry.terms()) {
+                postings.computeIfPresent(term, (k, old) -> {
+                    long[] arr = Arrays.stream(old).filter(v -> v != id).toArray();
+                    // 返回 null 会移除空的倒排列表
+                    return arr.length == 0 ? null : arr;
+                });
+            }
+        }
+    }
+}
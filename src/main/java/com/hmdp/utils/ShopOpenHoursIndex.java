@@ -0,0 +1,135 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongPredicate;
+
+/**
+ * @Description: 进程内的店铺营业时间索引：店铺 id -> 类型与一周营业位图。
+ * 营业时间只在加载和写入时解析一次，"营业中"过滤在内存中完成，不增加数据库查询
+ */
+@Component
+public class ShopOpenHoursIndex {
+
+    // 按 id 有序，按类型列出营业中的店铺时与数据库按主键分页的顺序一致
+    private volatile ConcurrentSkipListMap<Long, Entry> byId = new ConcurrentSkipListMap<>();
+
+    // 是否已完成全量加载
+    private volatile boolean ready;
+
+    // 营业时间所在的时区，不依赖 JVM 默认时区
+    private final ZoneId zone;
+
+    public ShopOpenHoursIndex(@Value("${hmdp.shop.open-hours.zone:Asia/Shanghai}") String zone) {
+        this.zone = ZoneId.of(zone);
+    }
+
+    /**
+     * 营业时间所在时区的当前时间
+     */
+    public LocalDateTime now() {
+        return LocalDateTime.now(zone);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 全量加载：构建新的索引后整体替换
+     * @param shops 至少包含 id、typeId、openHours
+     */
+    public synchronized void load(Collection<Shop> shops) {
+        ConcurrentSkipListMap<Long, Entry> fresh = new ConcurrentSkipListMap<>();
+        for (Shop shop : shops) {
+            if (shop.getId() != null) {
+                fresh.put(shop.getId(), toEntry(shop));
+            }
+        }
+        byId = fresh;
+        ready = true;
+    }
+
+    /**
+     * 新增或修改店铺
+     * @param shop 至少包含 id、typeId、openHours
+     */
+    public synchronized void put(Shop shop) {
+        if (shop == null || shop.getId() == null) {
+            return;
+        }
+        byId.put(shop.getId(), toEntry(shop));
+    }
+
+    public synchronized void remove(Long shopId) {
+        byId.remove(shopId);
+    }
+
+    /**
+     * 某一时刻的营业中过滤条件。营业时间无法解析的店铺视为不在营业
+     */
+    public LongPredicate openAt(LocalDateTime time) {
+        int slot = OpenHours.slotOf(time);
+        Map<Long, Entry> map = byId;
+        return id -> {
+            Entry entry = map.get(id);
+            return entry != null && OpenHours.isOpen(entry.bits, slot);
+        };
+    }
+
+    /**
+     * 按 id 顺序分页列出某类型下营业中的店铺
+     * @param typeId 店铺类型，为 null 表示全部类型
+     * @param from 跳过的数量
+     * @param size 返回的数量
+     */
+    public List<Long> listOpen(Long typeId, LocalDateTime time, int from, int size) {
+        int slot = OpenHours.slotOf(time);
+        List<Long> ids = new ArrayList<>(size);
+        int skipped = 0;
+        for (Map.Entry<Long, Entry> e : byId.entrySet()) {
+            Entry entry = e.getValue();
+            if ((typeId != null && !Objects.equals(typeId, entry.typeId)) || !OpenHours.isOpen(entry.bits, slot)) {
+                continue;
+            }
+            if (skipped < from) {
+                skipped++;
+                continue;
+            }
+            ids.add(e.getKey());
+            if (ids.size() == size) {
+                break;
+            }
+        }
+        return ids;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    private static Entry toEntry(Shop shop) {
+        return new Entry(shop.getTypeId(), OpenHours.parse(shop.getOpenHours()));
+    }
+
+    private static class Entry {
+        final Long typeId;
+        // 一周营业位图，无法解析时为 null
+        final long[] bits;
+
+        Entry(Long typeId, long[] bits) {
+            this.typeId = typeId;
+            this.bits = bits;
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.hmdp.utils;
 
 public class SystemConstants {
-    public static final String IMAGE_UPLOAD_DIR = "C:\\Softwares\\Developer_Kits\\Nginx_Server\\nginx-1.18.0\\html\\hmdp\\imgs\\";
     public static final String USER_NICK_NAME_PREFIX = "user_";
     public static final int DEFAULT_PAGE_SIZE = 5;
     public static final int MAX_PAGE_SIZE = 10;
+    public static final int MAX_SCROLL_OFFSET = 10000; // 游标分页最多能翻过的条数，限制附近查询的 GEOSEARCH COUNT
+    public static final double SHOP_NEARBY_RADIUS = 5000; // 附近店铺的查询半径（米）
+    public static final int SHOP_TILE_PRECISION = 6; // 附近查询瓦片缓存的 geohash 精度，约 1.2 km × 0.6 km
+    public static final int SHOP_TILE_MAX_SIZE = 200; // 每个瓦片最多缓存的候选店铺数量
+    public static final int SHOP_DETAIL_BLOG_SIZE = 3; // 店铺详情页展示的热门笔记数量
+    public static final int FEED_PAGE_SIZE = 2; // 关注动态每页的笔记数量
+    public static final int COMMENT_REPLY_PREVIEW_SIZE = 3; // 评论列表中每条一级评论预加载的回复数量
 }
@@ -0,0 +1,30 @@
+-- 用重建好的临时排行原子地替换热门排行，并补上重建期间的变化
+-- KEYS[1]: 重建的临时排行 blog:hot:rebuilding（分数按数据库中的点赞数计算）
+-- KEYS[2]: 热门笔记排行 blog:hot
+-- KEYS[3]: 待写回数据库的点赞数增量 blog:liked:pending
+-- 1. 参数列表
+-- 1.1 重建时读取到的最大笔记 id
+local maxId = tonumber(ARGV[1])
+-- 1.2 排行保留的笔记数量
+local maxSize = tonumber(ARGV[2])
+
+-- 2. 叠加尚未写回数据库的点赞数增量（重建期间暂停写回，增量与读取到的点赞数没有重叠）
+local pending = redis.call('hgetall', KEYS[3])
+for i = 1, #pending, 2 do
+    if (redis.call('zscore', KEYS[1], pending[i])) then
+        redis.call('zincrby', KEYS[1], pending[i + 1], pending[i])
+    end
+end
+
+-- 3. 重建开始后发布的笔记没有被读取到，沿用当前排行中的分数（已包含点赞）
+local members = redis.call('zrange', KEYS[2], 0, -1, 'withscores')
+for i = 1, #members, 2 do
+    if (tonumber(members[i]) > maxId) then
+        redis.call('zadd', KEYS[1], members[i + 1], members[i])
+    end
+end
+
+-- 4. 裁剪并替换
+redis.call('zremrangebyrank', KEYS[1], 0, -maxSize - 1)
+redis.call('rename', KEYS[1], KEYS[2])
+return redis.call('zcard', KEYS[2])
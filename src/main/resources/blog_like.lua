@@ -0,0 +1,30 @@
+-- 点赞或取消点赞：原子地切换点赞状态，累加待写回数据库的点赞数增量，并调整热门排行分数
+-- KEYS[1]: 笔记的点赞用户 blog:liked:{id}
+-- KEYS[2]: 待写回数据库的点赞数增量 blog:liked:pending
+-- KEYS[3]: 热门笔记排行 blog:hot
+-- 1. 参数列表
+-- 1.1 笔记 id
+local blogId = ARGV[1]
+-- 1.2 用户 id
+local userId = ARGV[2]
+-- 1.3 点赞时间戳
+local time = ARGV[3]
+
+-- 2. 判断是否点赞过 zscore blog:liked:{id} userId
+local delta
+if (redis.call('zscore', KEYS[1], userId)) then
+    -- 2.1 已点赞，取消点赞
+    redis.call('zrem', KEYS[1], userId)
+    delta = -1
+else
+    -- 2.2 未点赞，点赞
+    redis.call('zadd', KEYS[1], time, userId)
+    delta = 1
+end
+-- 3. 累加点赞数增量 hincrby blog:liked:pending blogId delta
+redis.call('hincrby', KEYS[2], blogId, delta)
+-- 4. 只调整仍在排行中的笔记，已被裁剪出排行的旧笔记由定时重建重新计算
+if (redis.call('zscore', KEYS[3], blogId)) then
+    redis.call('zincrby', KEYS[3], delta, blogId)
+end
+return delta
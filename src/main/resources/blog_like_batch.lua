@@ -0,0 +1,19 @@
+-- 取出一批待写回数据库的点赞数增量：把累加中的增量整体改名为写回批次，并分配递增的批次号
+-- 上一批次没有写完（写回失败或进程崩溃）时不取新的增量，返回上一批次的批次号，重新写回该批次
+-- KEYS[1]: 待写回数据库的点赞数增量 blog:liked:pending
+-- KEYS[2]: 正在写回的批次 blog:liked:flushing
+-- KEYS[3]: 批次号 blog:liked:batch
+-- 1. 上一批次还在，继续写回
+local batch = redis.call('hget', KEYS[2], '_batch')
+if (batch) then
+    return tonumber(batch)
+end
+-- 2. 没有新的增量
+if (redis.call('exists', KEYS[1]) == 0) then
+    return 0
+end
+-- 3. 改名后点赞脚本的 hincrby 会写入新的 blog:liked:pending，不影响这一批次
+redis.call('rename', KEYS[1], KEYS[2])
+batch = redis.call('incr', KEYS[3])
+redis.call('hset', KEYS[2], '_batch', batch)
+return batch
@@ -0,0 +1,22 @@
+-- 推送笔记到粉丝收件箱：只写入已存在的收件箱，并裁剪到最大长度
+-- 收件箱不存在（新用户或长期未活跃已过期）时跳过，读取时再从关注作者的发件箱重建
+-- KEYS: 粉丝收件箱 feed:{userId}
+-- 1. 参数列表
+-- 1.1 笔记 id
+local blogId = ARGV[1]
+-- 1.2 发布时间戳
+local time = ARGV[2]
+-- 1.3 收件箱最大长度（不含占位元素）
+local maxSize = tonumber(ARGV[3])
+
+local pushed = 0
+for _, key in ipairs(KEYS) do
+    if (redis.call('exists', key) == 1) then
+        -- 2.1 推送 zadd key time blogId
+        redis.call('zadd', key, time, blogId)
+        -- 2.2 删除最旧的笔记，占位元素的 score 为 +inf，不会被删除
+        redis.call('zremrangebyrank', key, 0, -maxSize - 2)
+        pushed = pushed + 1
+    end
+end
+return pushed
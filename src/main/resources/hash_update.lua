@@ -0,0 +1,12 @@
+-- 按字段更新 Hash 缓存：只有缓存存在时才写入，避免生成缺少字段且没有过期时间的残缺缓存
+-- KEYS[1] 缓存 key；ARGV 字段、值交替排列
+if (redis.call('exists', KEYS[1]) == 0) then
+    return 0
+end
+-- 命中的是缓存穿透写入的空值标记，直接删除，下次读取时重新加载
+if (redis.call('hexists', KEYS[1], '_null') == 1) then
+    redis.call('del', KEYS[1])
+    return 0
+end
+redis.call('hset', KEYS[1], unpack(ARGV))
+return 1
@@ -0,0 +1,235 @@
+package com.hmdp.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.baomidou.mybatisplus.extension.conditions.query.QueryChainWrapper;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Follow;
+import com.hmdp.mapper.BlogMapper;
+import com.hmdp.mapper.FollowMapper;
+import com.hmdp.service.IFollowService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static com.hmdp.utils.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BlogServiceImplTest {
+
+    private BlogServiceImpl service;
+    private StringRedisTemplate template;
+    private CacheClient cacheClient;
+    private BlogMapper blogMapper;
+    private HashOperations<String, Object, Object> hashOps;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = new BlogServiceImpl();
+        template = mock(StringRedisTemplate.class);
+        cacheClient = mock(CacheClient.class);
+        blogMapper = mock(BlogMapper.class);
+        hashOps = mock(HashOperations.class);
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", template);
+        ReflectionTestUtils.setField(service, "cacheClient", cacheClient);
+        ReflectionTestUtils.setField(service, "baseMapper", blogMapper);
+        ReflectionTestUtils.setField(service, "pushThreshold", 10000L);
+        ReflectionTestUtils.setField(service, "inboxMaxSize", 500);
+        when(template.opsForHash()).thenReturn((HashOperations) hashOps);
+        when(cacheClient.buildKey(eq(CACHE_BLOG_KEY), any())).thenAnswer(inv -> CACHE_BLOG_KEY + inv.getArgument(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedFanoutEnqueueWithdrawsTheBlog() {
+        StreamOperations<String, Object, Object> streamOps = mock(StreamOperations.class);
+        when(template.opsForStream()).thenReturn(streamOps);
+        when(streamOps.add(eq(FEED_STREAM_KEY), anyMap())).thenThrow(new RuntimeException("redis down"));
+
+        Result result = saveBlog();
+
+        // 推送任务没有入队时不能返回发布成功，笔记被撤销，不加入热门排行
+        assertFalse(result.getSuccess());
+        verify(blogMapper).deleteById(100L);
+        verify(template, never()).opsForZSet();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void hotRankFailureDoesNotFailThePublish() {
+        StreamOperations<String, Object, Object> streamOps = mock(StreamOperations.class);
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        when(template.opsForStream()).thenReturn(streamOps);
+        when(template.opsForZSet()).thenReturn(zSetOps);
+        when(zSetOps.add(eq(BLOG_HOT_KEY), eq("100"), anyDouble())).thenThrow(new RuntimeException("redis down"));
+
+        Result result = saveBlog();
+
+        // 推送任务已经入队，热门排行在下次重建时补上
+        assertTrue(result.getSuccess());
+        assertEquals(100L, result.getData());
+        ArgumentCaptor<Map<String, String>> job = ArgumentCaptor.forClass(Map.class);
+        verify(streamOps).add(eq(FEED_STREAM_KEY), job.capture());
+        assertEquals("100", job.getValue().get("blogId"));
+        assertEquals("9", job.getValue().get("authorId"));
+        verify(blogMapper, never()).deleteById(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void publishClearsCachedNullDetail() {
+        when(template.opsForStream()).thenReturn(mock(StreamOperations.class));
+        when(template.opsForZSet()).thenReturn(mock(ZSetOperations.class));
+
+        assertTrue(saveBlog().getSuccess());
+
+        // 发布前查询这个 id 时写入的空值被删除
+        verify(template).delete(CACHE_BLOG_KEY + 100);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fanoutResumesFromRecordedProgress() {
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        SetOperations<String, String> setOps = mock(SetOperations.class);
+        when(template.opsForZSet()).thenReturn(zSetOps);
+        when(template.opsForValue()).thenReturn(valueOps);
+        when(template.opsForSet()).thenReturn(setOps);
+        FollowMapper followMapper = mockFollowers(2);
+        // 上次推送到粉丝关注记录 5 时中断
+        when(valueOps.get(FEED_FANOUT_KEY + 100)).thenReturn("5");
+        when(followMapper.selectList(any())).thenReturn(Arrays.asList(
+                new Follow().setId(6L).setUserId(21L),
+                new Follow().setId(8L).setUserId(22L)));
+
+        fanout();
+
+        verify(zSetOps).add(FEED_OUTBOX_KEY + 9, "100", 1000.0);
+        // 从记录 5 之后继续读取粉丝
+        ArgumentCaptor<QueryWrapper<Follow>> query = ArgumentCaptor.forClass(QueryWrapper.class);
+        verify(followMapper).selectList(query.capture());
+        assertTrue(query.getValue().getSqlSegment().contains("id >"), query.getValue().getSqlSegment());
+        assertTrue(query.getValue().getParamNameValuePairs().containsValue(5L));
+        // 一次脚本调用写入这批粉丝的收件箱，完成后删除进度
+        verify(template).execute(any(RedisScript.class), eq(Arrays.asList(FEED_KEY + 21, FEED_KEY + 22)),
+                eq("100"), eq("1000"), any());
+        verify(template).delete(FEED_FANOUT_KEY + 100);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void bigAuthorIsOnlyWrittenToOutbox() {
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        SetOperations<String, String> setOps = mock(SetOperations.class);
+        when(template.opsForZSet()).thenReturn(zSetOps);
+        when(template.opsForSet()).thenReturn(setOps);
+        ReflectionTestUtils.setField(service, "pushThreshold", 2L);
+        FollowMapper followMapper = mockFollowers(2);
+
+        fanout();
+
+        // 粉丝数达到阈值：只写发件箱，记为大V，不读取粉丝列表
+        verify(zSetOps).add(FEED_OUTBOX_KEY + 9, "100", 1000.0);
+        verify(setOps).add(FEED_BIG_AUTHORS_KEY, "9");
+        verify(followMapper, never()).selectList(any());
+        verify(template, never()).execute(any(RedisScript.class), anyList(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retriedLikeFlushKeepsBatchAndPatchesCache() {
+        // 批次 7：笔记 1 +2，笔记 2 +3
+        Map<Object, Object> flushing = new LinkedHashMap<>();
+        flushing.put("1", "2");
+        flushing.put("2", "3");
+        flushing.put("_batch", "7");
+        when(hashOps.entries(BLOG_LIKED_FLUSHING_KEY)).thenReturn(flushing);
+        when(template.execute(any(RedisScript.class), anyList())).thenReturn(7L);
+        // 第一次写回时笔记 2 失败
+        when(blogMapper.update(isNull(), any(Wrapper.class))).thenReturn(1).thenThrow(new RuntimeException("db down"));
+
+        assertFalse(this.<Boolean>flush());
+        // 批次保留，缓存中的详情不修改
+        verify(template, never()).delete(BLOG_LIKED_FLUSHING_KEY);
+        verify(cacheClient, never()).patchWithLogicalExpire(any());
+
+        // 重新写回同一个批次：笔记 1 已经写过，被 like_batch 条件跳过
+        reset(blogMapper);
+        when(template.execute(any(RedisScript.class), anyList())).thenReturn(7L, 0L);
+        when(blogMapper.update(isNull(), any(Wrapper.class))).thenReturn(0, 1);
+        when(blogMapper.selectList(any())).thenReturn(Arrays.asList(
+                new Blog().setId(1L).setLiked(12).setLikeBatch(7L),
+                new Blog().setId(2L).setLiked(23).setLikeBatch(7L)));
+
+        assertTrue(this.<Boolean>flush());
+
+        ArgumentCaptor<Wrapper<Blog>> updates = ArgumentCaptor.forClass(Wrapper.class);
+        verify(blogMapper, times(2)).update(isNull(), updates.capture());
+        for (Wrapper<Blog> wrapper : updates.getAllValues()) {
+            // 每次写回都带批次号条件，批次号不变
+            assertTrue(wrapper.getSqlSegment().contains("like_batch <"), wrapper.getSqlSegment());
+            assertTrue(((UpdateWrapper<Blog>) wrapper).getParamNameValuePairs().containsValue(7L));
+        }
+        // 两篇笔记一起写入缓存，包括被跳过的笔记 1
+        ArgumentCaptor<Map<String, Map<String, Object>>> patches = ArgumentCaptor.forClass(Map.class);
+        verify(cacheClient).patchWithLogicalExpire(patches.capture());
+        assertEquals(12, patches.getValue().get(CACHE_BLOG_KEY + 1).get("liked"));
+        assertEquals(23, patches.getValue().get(CACHE_BLOG_KEY + 2).get("liked"));
+        assertEquals(7L, patches.getValue().get(CACHE_BLOG_KEY + 2).get("likeBatch"));
+        verify(template).delete(BLOG_LIKED_FLUSHING_KEY);
+    }
+
+    private Result saveBlog() {
+        UserDTO user = new UserDTO();
+        user.setId(9L);
+        UserHolder.saveUser(user);
+        when(blogMapper.insert(any(Blog.class))).thenAnswer(inv -> {
+            ((Blog) inv.getArgument(0)).setId(100L);
+            return 1;
+        });
+        when(blogMapper.deleteById(any())).thenReturn(1);
+        return service.saveBlog(new Blog().setShopId(1L).setTitle("探店"));
+    }
+
+    private FollowMapper mockFollowers(int fans) {
+        FollowMapper followMapper = mock(FollowMapper.class);
+        IFollowService followService = mock(IFollowService.class);
+        when(followService.query()).thenAnswer(inv -> new QueryChainWrapper<>(followMapper));
+        when(followMapper.selectCount(any())).thenReturn(fans);
+        ReflectionTestUtils.setField(service, "followService", followService);
+        return followMapper;
+    }
+
+    private void fanout() {
+        ReflectionTestUtils.invokeMethod(service, "fanout", 100L, 9L, 1000L);
+    }
+
+    private <T> T flush() {
+        return ReflectionTestUtils.invokeMethod(service, "doFlushLikes");
+    }
+}
@@ -0,0 +1,149 @@
+package com.hmdp.service.impl;
+
+import com.hmdp.dto.Result;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static com.hmdp.utils.RedisConstants.LOCK_UPLOAD_KEY;
+import static com.hmdp.utils.RedisConstants.UPLOAD_REF_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ImageServiceImplTest {
+
+    @TempDir
+    Path dir;
+
+    private ImageServiceImpl service;
+    private RLock lock;
+    // upload:ref:{sha256} 的内存副本：key -> (userId -> 引用次数)
+    private final Map<String, Map<Object, Long>> refs = new HashMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = new ImageServiceImpl();
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        when(template.opsForHash()).thenReturn(hashOps);
+        when(hashOps.increment(anyString(), any(), anyLong())).thenAnswer(inv ->
+                refs.computeIfAbsent(inv.getArgument(0), k -> new HashMap<>())
+                        .merge(inv.getArgument(1), inv.<Long>getArgument(2), Long::sum));
+        when(hashOps.get(anyString(), any())).thenAnswer(inv ->
+                refs.getOrDefault(inv.<String>getArgument(0), new HashMap<>()).get(inv.getArgument(1)));
+        when(hashOps.delete(anyString(), any())).thenAnswer(inv ->
+                refs.getOrDefault(inv.<String>getArgument(0), new HashMap<>()).remove(inv.getArgument(1)) == null ? 0L : 1L);
+        when(hashOps.size(anyString())).thenAnswer(inv ->
+                (long) refs.getOrDefault(inv.<String>getArgument(0), new HashMap<>()).size());
+
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        lock = mock(RLock.class);
+        when(redissonClient.getLock(startsWith(LOCK_UPLOAD_KEY))).thenReturn(lock);
+
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", template);
+        ReflectionTestUtils.setField(service, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(service, "uploadDir", dir.toString());
+        ReflectionTestUtils.setField(service, "thumbnailWidths", new int[]{200, 600});
+        ReflectionTestUtils.invokeMethod(service, "init");
+    }
+
+    @Test
+    void sameContentIsStoredOnceAndDeletedWithTheLastReference() throws IOException {
+        byte[] png = png(100);
+        String name = (String) upload(png, 1L).getData();
+        assertEquals(name, upload(png, 2L).getData());
+        assertEquals(name, upload(png, 2L).getData());
+        Path file = dir.resolve(name.substring(1));
+        assertTrue(Files.exists(file));
+        String hash = file.getFileName().toString().substring(0, 64);
+        assertEquals(1L, refs.get(UPLOAD_REF_KEY + hash).get("1"));
+        assertEquals(2L, refs.get(UPLOAD_REF_KEY + hash).get("2"));
+
+        // 没有引用的用户不能删除
+        assertFalse(service.deleteBlogImage(name, 3L).getSuccess());
+        // 用户 1 删除后，用户 2 仍有两次引用
+        assertTrue(service.deleteBlogImage(name, 1L).getSuccess());
+        assertFalse(service.deleteBlogImage(name, 1L).getSuccess());
+        assertTrue(service.deleteBlogImage(name, 2L).getSuccess());
+        assertTrue(Files.exists(file));
+        assertTrue(service.deleteBlogImage(name, 2L).getSuccess());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void thumbnailsAreCreatedNextToTheOriginal() throws IOException {
+        Path original = storeOriginal(800);
+
+        createThumbnails(original);
+
+        assertTrue(Files.exists(original.resolveSibling(hashOf(original) + "_200.png")));
+        assertTrue(Files.exists(original.resolveSibling(hashOf(original) + "_600.png")));
+    }
+
+    @Test
+    void thumbnailsAreDroppedWhenTheOriginalIsDeletedMeanwhile() throws IOException {
+        Path original = storeOriginal(800);
+        // 缩略图生成期间，最后一个引用被删除：删除在持有锁时完成
+        doAnswer(inv -> {
+            Files.deleteIfExists(original);
+            return null;
+        }).when(lock).lock();
+
+        createThumbnails(original);
+
+        try (Stream<Path> files = Files.list(original.getParent())) {
+            assertEquals(0, files.count(), "不能留下无人清理的缩略图");
+        }
+        try (Stream<Path> files = Files.list(dir.resolve("tmp"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private Result upload(byte[] content, Long userId) {
+        Result result = service.uploadBlogImage(new MockMultipartFile("file", "a.png", "image/png", content), userId);
+        assertTrue(result.getSuccess(), result.getErrorMsg());
+        return result;
+    }
+
+    private Path storeOriginal(int width) throws IOException {
+        String hash = String.format("%064d", width);
+        Path original = dir.resolve("blogs/" + hash.charAt(0) + "/" + hash.charAt(1) + "/" + hash + ".png");
+        Files.createDirectories(original.getParent());
+        Files.write(original, png(width));
+        return original;
+    }
+
+    private void createThumbnails(Path original) {
+        ReflectionTestUtils.invokeMethod(service, "createThumbnails", original, hashOf(original), "png");
+    }
+
+    private static String hashOf(Path original) {
+        return original.getFileName().toString().substring(0, 64);
+    }
+
+    private static byte[] png(int width) throws IOException {
+        BufferedImage image = new BufferedImage(width, width / 2, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
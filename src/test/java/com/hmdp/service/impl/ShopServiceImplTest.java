@@ -0,0 +1,211 @@
+package com.hmdp.service.impl;
+
+import com.hmdp.dto.CursorResult;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopDetailDTO;
+import com.hmdp.entity.Shop;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CursorUtils;
+import com.hmdp.utils.GeoTile;
+import com.hmdp.utils.GeoUtils;
+import com.hmdp.utils.ShopGeoIndex;
+import com.hmdp.utils.ShopOpenHoursIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_GEO_TILE_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_HASH_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ShopServiceImplTest {
+
+    private static final double X = 120.149192;
+    private static final double Y = 30.316078;
+
+    // 店铺到请求点的距离（米）：5、6 号相差 0.1 米，正好落在第一页的边界两侧
+    private static final double[] METERS = {100, 200, 300, 400, 500, 500.1, 700, 800};
+
+    private ShopServiceImpl service;
+    private StringRedisTemplate template;
+    private CacheClient cacheClient;
+    private List<Shop> shops;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = new ShopServiceImpl();
+        template = mock(StringRedisTemplate.class);
+        cacheClient = mock(CacheClient.class);
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", template);
+        ReflectionTestUtils.setField(service, "cacheClient", cacheClient);
+        ReflectionTestUtils.setField(service, "shopGeoIndex", new ShopGeoIndex());
+        ReflectionTestUtils.setField(service, "geoTileEnabled", true);
+
+        shops = new ArrayList<>();
+        for (int i = 0; i < METERS.length; i++) {
+            shops.add(new Shop().setId(i + 1L).setTypeId(1L).setX(X + GeoUtils.lonDegrees(METERS[i], Y)).setY(Y));
+        }
+
+        // 瓦片只完整覆盖 4 km：第一页可以从瓦片返回，第二页不足一页，需要整个 5 km 半径，回退到 GEOSEARCH
+        when(cacheClient.queryWithPassThrough(eq(CACHE_GEO_TILE_KEY), anyString(), eq(GeoTile.class), any(), any(), any()))
+                .thenAnswer(inv -> {
+                    GeoTile tile = new GeoTile();
+                    tile.setX(X);
+                    tile.setY(Y);
+                    tile.setCovered(4000.0);
+                    tile.setShops(shops.stream().map(ShopServiceImplTest::copy).collect(Collectors.toList()));
+                    return tile;
+                });
+
+        // GEOSEARCH 返回的距离与本地计算的有亚米级偏差（坐标量化、四舍五入），排序也可能因此不同
+        when(template.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            List<GeoResult<RedisGeoCommands.GeoLocation<byte[]>>> content = new ArrayList<>();
+            for (Shop shop : shops) {
+                double noise = shop.getId() == 6L ? -0.3 : 0.2;
+                double d = GeoUtils.distance(X, Y, shop.getX(), shop.getY()) + noise;
+                content.add(new GeoResult<>(new RedisGeoCommands.GeoLocation<>(
+                        shop.getId().toString().getBytes(StandardCharsets.UTF_8), new Point(shop.getX(), shop.getY())),
+                        new Distance(Math.round(d * 10000) / 10000.0)));
+            }
+            content.sort(Comparator.comparingDouble(r -> r.getDistance().getValue()));
+            return Collections.singletonList(new GeoResults<>(content));
+        });
+
+        when(cacheClient.queryHashBatchWithPassThrough(eq(CACHE_SHOP_HASH_KEY), anyCollection(), eq(Shop.class), any(), any(), any(), any()))
+                .thenAnswer(inv -> {
+                    Collection<Long> ids = inv.getArgument(1);
+                    Map<Long, Shop> map = new LinkedHashMap<>();
+                    for (Long id : ids) {
+                        map.put(id, copy(shops.get(id.intValue() - 1)));
+                    }
+                    return map;
+                });
+    }
+
+    @Test
+    void scrollCrossesFromTileToGeoSearchWithoutGapsOrDuplicates() {
+        CursorResult first = scroll(null);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), ids(first));
+        assertNotNull(first.getCursor());
+        // 第一页来自瓦片，没有访问 GEOSEARCH
+        verify(template, never()).executePipelined(any(RedisCallback.class));
+
+        CursorResult second = scroll(first.getCursor());
+        verify(template).executePipelined(any(RedisCallback.class));
+        assertEquals(Arrays.asList(6L, 7L, 8L), ids(second));
+        assertNull(second.getCursor());
+    }
+
+    @Test
+    void distancesAreTheSameOnBothPaths() {
+        CursorResult first = scroll(null);
+        Shop last = (Shop) first.getList().get(4);
+        CursorResult second = scroll(first.getCursor());
+        Shop next = (Shop) second.getList().get(0);
+        // 两条路径都按 Redis 中的坐标计算距离，5、6 号的相对顺序不受 GEOSEARCH 返回距离的偏差影响
+        assertEquals(GeoUtils.distance(X, Y, shops.get(4).getX(), Y), last.getDistance());
+        assertEquals(GeoUtils.distance(X, Y, shops.get(5).getX(), Y), next.getDistance());
+        assertTrue(next.getDistance() > last.getDistance());
+    }
+
+    @Test
+    void redisCursorStaysOnRedisAfterLocalIndexIsReady() {
+        CursorResult first = scroll(null);
+        // 翻页之前本地空间索引加载完成，游标来自 Redis，继续使用 GEOSEARCH
+        ShopGeoIndex index = new ShopGeoIndex();
+        ReflectionTestUtils.setField(index, "enabled", true);
+        index.load(shops);
+        ReflectionTestUtils.setField(service, "shopGeoIndex", index);
+
+        CursorResult second = scroll(first.getCursor());
+        verify(template).executePipelined(any(RedisCallback.class));
+        assertEquals(Arrays.asList(6L, 7L, 8L), ids(second));
+    }
+
+    @Test
+    void localCursorIsRejectedWithoutLocalIndex() {
+        String cursor = CursorUtils.encode(500.0, 5L, 5, 1);
+        Result result = service.queryShopByTypeScroll(1, X, Y, cursor, null);
+        assertFalse(result.getSuccess());
+    }
+
+    @Test
+    void cursorWithoutSourceIsRejected() {
+        Result result = service.queryShopByTypeScroll(1, X, Y, CursorUtils.encode(500.0, 5L, 5), null);
+        assertEquals("无效的游标", result.getErrorMsg());
+    }
+
+    @Test
+    void timedOutDetailPartIsInterrupted() throws InterruptedException {
+        IVoucherService voucherService = mock(IVoucherService.class);
+        IBlogService blogService = mock(IBlogService.class);
+        ReflectionTestUtils.setField(service, "voucherService", voucherService);
+        ReflectionTestUtils.setField(service, "blogService", blogService);
+        ReflectionTestUtils.setField(service, "detailTimeoutMs", 100L);
+        when(cacheClient.queryHashWithPassThrough(eq(CACHE_SHOP_HASH_KEY), eq(1L), eq(Shop.class), any(), any(), any()))
+                .thenReturn(copy(shops.get(0)));
+        when(blogService.queryTopBlogsOfShop(eq(1L), anyInt(), any())).thenReturn(Collections.emptyList());
+        // 优惠券查询卡住，直到线程被中断
+        CountDownLatch interrupted = new CountDownLatch(1);
+        when(voucherService.queryVoucherOfShopWithStock(1L)).thenAnswer(inv -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return Collections.emptyList();
+        });
+
+        Result result = service.queryShopDetail(1L);
+
+        ShopDetailDTO detail = (ShopDetailDTO) result.getData();
+        assertEquals(Collections.singletonList("vouchers"), detail.getMissing());
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "超时的部分应被中断，不再占用线程");
+    }
+
+    @Test
+    void openNowFailsWhileOpenHoursIndexIsLoading() {
+        ReflectionTestUtils.setField(service, "shopOpenHoursIndex", new ShopOpenHoursIndex("Asia/Shanghai"));
+        // 后台构建索引正在进行，不再重复提交
+        ReflectionTestUtils.setField(service, "openHoursLoading", new AtomicBoolean(true));
+
+        Result result = service.queryShopByTypeScroll(1, X, Y, null, true);
+
+        // 不能把未过滤的结果当作营业中返回
+        assertFalse(result.getSuccess());
+        verifyNoInteractions(template);
+    }
+
+    private CursorResult scroll(String cursor) {
+        Result result = service.queryShopByTypeScroll(1, X, Y, cursor, null);
+        assertTrue(result.getSuccess(), result.getErrorMsg());
+        return (CursorResult) result.getData();
+    }
+
+    private static List<Long> ids(CursorResult result) {
+        return result.getList().stream().map(o -> ((Shop) o).getId()).collect(Collectors.toList());
+    }
+
+    private static Shop copy(Shop shop) {
+        return new Shop().setId(shop.getId()).setTypeId(shop.getTypeId()).setX(shop.getX()).setY(shop.getY());
+    }
+}
@@ -0,0 +1,187 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheClientTest {
+
+    private StringRedisTemplate template;
+    private HashOperations<String, Object, Object> hashOps;
+    private CacheClient cacheClient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        template = mock(StringRedisTemplate.class);
+        // 命名空间版本号不存在，key 为 keyPrefix + id
+        ValueOperations<String, String> valueOps = mock(ValueOperations.class);
+        when(template.opsForValue()).thenReturn(valueOps);
+        hashOps = mock(HashOperations.class);
+        when(template.opsForHash()).thenReturn(hashOps);
+        cacheClient = new CacheClient(template, new CacheStats());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void corruptedValueIsTreatedAsMiss() {
+        // 压缩标记后只有一半数据
+        byte[] corrupted = {CacheCodec.COMPRESSED_MARKER, 0x4a, 0x4c};
+        when(template.execute(any(RedisCallback.class))).thenReturn(corrupted);
+
+        Shop shop = cacheClient.queryWithPassThrough("cache:test:", 1L, Shop.class,
+                id -> new Shop().setId(id).setName("103茶餐厅"), 1L, TimeUnit.MINUTES);
+
+        assertEquals("103茶餐厅", shop.getName());
+        verify(template).delete("cache:test:1");
+    }
+
+    @Test
+    void hashHitDoesNotLoadFromDatabase() {
+        Map<Object, Object> entries = new HashMap<>();
+        entries.put("id", "1");
+        entries.put("name", "103茶餐厅");
+        entries.put("x", "120.149192");
+        when(hashOps.entries("cache:shop:1")).thenReturn(entries);
+
+        Shop shop = cacheClient.queryHashWithPassThrough("cache:shop:", 1L, Shop.class,
+                id -> fail("命中缓存时不应查询数据库"), 30L, TimeUnit.MINUTES);
+
+        assertEquals("103茶餐厅", shop.getName());
+        assertEquals(120.149192, shop.getX());
+    }
+
+    @Test
+    void hashNullMarkerIsNotReloaded() {
+        when(hashOps.entries("cache:shop:1")).thenReturn(Collections.singletonMap(RedisConstants.CACHE_NULL_FIELD, ""));
+
+        assertNull(cacheClient.queryHashWithPassThrough("cache:shop:", 1L, Shop.class,
+                id -> fail("命中空值时不应查询数据库"), 30L, TimeUnit.MINUTES));
+    }
+
+    @Test
+    void hashMissOfUnknownIdWritesNullMarker() {
+        when(hashOps.entries("cache:shop:1")).thenReturn(Collections.emptyMap());
+
+        assertNull(cacheClient.queryHashWithPassThrough("cache:shop:", 1L, Shop.class, id -> null, 30L, TimeUnit.MINUTES));
+
+        HashOperations<String, Object, Object> pipelineHash = runPipeline(0);
+        verify(pipelineHash).put("cache:shop:1", RedisConstants.CACHE_NULL_FIELD, "");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void hashBatchLoadsOnlyMissesAndKeepsOrder() {
+        Map<Object, Object> hit = new HashMap<>();
+        hit.put("id", "3");
+        hit.put("name", "开乐迪KTV");
+        // 3 命中，2 是空值，1 未命中
+        when(template.executePipelined(any(SessionCallback.class))).thenReturn(
+                Arrays.asList(hit, Collections.singletonMap(RedisConstants.CACHE_NULL_FIELD, ""), Collections.emptyMap()),
+                Collections.emptyList());
+
+        Map<Long, Shop> shops = cacheClient.queryHashBatchWithPassThrough("cache:shop:", Arrays.asList(3L, 2L, 1L),
+                Shop.class, Shop::getId, ids -> {
+                    assertEquals(Collections.singletonList(1L), ids);
+                    return Collections.singletonList(new Shop().setId(1L).setName("101茶餐厅"));
+                }, 30L, TimeUnit.MINUTES);
+
+        assertEquals(Arrays.asList(3L, 1L), new ArrayList<>(shops.keySet()));
+        assertEquals("开乐迪KTV", shops.get(3L).getName());
+        // 只写回回源的 1
+        HashOperations<String, Object, Object> pipelineHash = runPipeline(1);
+        ArgumentCaptor<Map<String, String>> fields = ArgumentCaptor.forClass(Map.class);
+        verify(pipelineHash).putAll(eq("cache:shop:1"), fields.capture());
+        assertEquals("101茶餐厅", fields.getValue().get("name"));
+        verifyNoMoreInteractions(pipelineHash);
+    }
+
+    /**
+     * 在模拟的连接上执行第 index 次管道提交的 SessionCallback，返回其中使用的 Hash 操作
+     */
+    @SuppressWarnings("unchecked")
+    private HashOperations<String, Object, Object> runPipeline(int index) {
+        ArgumentCaptor<SessionCallback<Object>> callback = ArgumentCaptor.forClass(SessionCallback.class);
+        verify(template, atLeast(index + 1)).executePipelined(callback.capture());
+        RedisOperations<String, String> operations = mock(RedisOperations.class);
+        HashOperations<String, Object, Object> pipelineHash = mock(HashOperations.class);
+        when(operations.opsForHash()).thenReturn((HashOperations) pipelineHash);
+        callback.getAllValues().get(index).execute(operations);
+        return pipelineHash;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void patchKeepsExpireTimeAndSkipsMissingKeys() {
+        RedisData redisData = new RedisData();
+        redisData.setExpireTime(LocalDateTime.of(2030, 1, 1, 0, 0));
+        redisData.setData(new Blog().setId(1L).setTitle("探店").setLiked(3).setLikeBatch(6L));
+        byte[] cached = JSONUtil.toJsonStr(redisData).getBytes(StandardCharsets.UTF_8);
+        // 笔记 1 已缓存，笔记 2 是空值，笔记 3 未缓存
+        when(template.executePipelined(any(RedisCallback.class), any(RedisSerializer.class)))
+                .thenReturn(Arrays.asList(cached, new byte[0], null));
+
+        Map<String, Map<String, Object>> patches = new LinkedHashMap<>();
+        for (long id = 1; id <= 3; id++) {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("liked", 10);
+            fields.put("likeBatch", 7L);
+            patches.put("cache:blog:" + id, fields);
+        }
+        cacheClient.patchWithLogicalExpire(patches);
+
+        // 只写回笔记 1：保留 TTL，key 已被删除时不写入
+        ArgumentCaptor<RedisCallback<Object>> callback = ArgumentCaptor.forClass(RedisCallback.class);
+        verify(template).executePipelined(callback.capture());
+        RedisConnection connection = mock(RedisConnection.class);
+        RedisStringCommands stringCommands = mock(RedisStringCommands.class);
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        callback.getValue().doInRedis(connection);
+
+        ArgumentCaptor<byte[]> value = ArgumentCaptor.forClass(byte[].class);
+        verify(stringCommands).set(eq("cache:blog:1".getBytes(StandardCharsets.UTF_8)), value.capture(),
+                eq(Expiration.keepTtl()), eq(RedisStringCommands.SetOption.SET_IF_PRESENT));
+        verifyNoMoreInteractions(stringCommands);
+
+        RedisData patched = JSONUtil.toBean(CacheCodec.decode(value.getValue()), RedisData.class);
+        assertEquals(redisData.getExpireTime(), patched.getExpireTime());
+        Blog blog = JSONUtil.toBean((JSONObject) patched.getData(), Blog.class);
+        assertEquals("探店", blog.getTitle());
+        assertEquals(10, blog.getLiked());
+        assertEquals(7L, blog.getLikeBatch());
+    }
+
+    @Test
+    void emptyPatchDoesNotTouchRedis() {
+        cacheClient.patchWithLogicalExpire(Collections.emptyMap());
+        verify(template, never()).executePipelined(any(RedisCallback.class), any(RedisSerializer.class));
+    }
+}
@@ -0,0 +1,67 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheCodecTest {
+
+    @Test
+    void smallValueIsStoredAsPlainText() {
+        String json = "{\"id\":1,\"name\":\"103茶餐厅\"}";
+        byte[] bytes = CacheCodec.encode(json, 1024);
+        assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), bytes);
+        assertEquals(json, CacheCodec.decode(bytes));
+    }
+
+    @Test
+    void largeValueIsCompressedBehindMarker() {
+        String json = "[" + StrUtil.repeat("{\"name\":\"103茶餐厅\",\"area\":\"大关\"},", 200) + "{}]";
+        byte[] bytes = CacheCodec.encode(json, 1024);
+        assertEquals(CacheCodec.COMPRESSED_MARKER, bytes[0]);
+        assertTrue(bytes.length < json.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(json, CacheCodec.decode(bytes));
+    }
+
+    @Test
+    void incompressibleValueIsStoredAsPlainText() {
+        // 很短的值压缩后加上标记字节反而更大，应保留原文，且不带标记字节
+        String value = "{\"id\":1}";
+        byte[] bytes = CacheCodec.encode(value, 1);
+        assertArrayEquals(value.getBytes(StandardCharsets.UTF_8), bytes);
+        assertEquals(value, CacheCodec.decode(bytes));
+    }
+
+    @Test
+    void thresholdZeroDisablesCompression() {
+        String json = StrUtil.repeat("a", 4096);
+        assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), CacheCodec.encode(json, 0));
+    }
+
+    @Test
+    void decodeHandlesNullAndEmpty() {
+        assertNull(CacheCodec.decode(null));
+        assertEquals("", CacheCodec.decode(new byte[0]));
+        assertEquals("", CacheCodec.decode(CacheCodec.encode("", 1)));
+    }
+
+    @Test
+    void corruptedCompressedValueFails() {
+        // 0x07：BFINAL=1，BTYPE=11（保留值），不是合法的 Deflate 数据块
+        byte[] bytes = {CacheCodec.COMPRESSED_MARKER, 0x07, 0x34, 0x56, 0x78};
+        assertThrows(IllegalStateException.class, () -> CacheCodec.decode(bytes));
+    }
+
+    @Test
+    void truncatedCompressedValueFails() {
+        // 截断后 Inflater 只是等待更多输入，不会抛出 DataFormatException，不能返回一半的文本
+        String json = "[" + StrUtil.repeat("{\"name\":\"103茶餐厅\",\"area\":\"大关\"},", 200) + "{}]";
+        byte[] bytes = CacheCodec.encode(json, 1024);
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+        assertThrows(IllegalStateException.class, () -> CacheCodec.decode(truncated));
+    }
+}
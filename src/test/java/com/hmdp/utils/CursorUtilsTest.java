@@ -0,0 +1,67 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.codec.Base64;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorUtilsTest {
+
+    @Test
+    void roundTrip() {
+        String cursor = CursorUtils.encode(1234.5678, 42L, 10);
+        CursorUtils.Cursor parsed = CursorUtils.decode(cursor, 3);
+        assertEquals(1234.5678, parsed.getDouble(0, 0, Double.MAX_VALUE));
+        assertEquals(42L, parsed.getLong(1, 1, Long.MAX_VALUE));
+        assertEquals(10, parsed.getInt(2, 0, SystemConstants.MAX_SCROLL_OFFSET));
+    }
+
+    @Test
+    void cursorIsUrlSafe() {
+        String cursor = CursorUtils.encode("??>>", "~~~");
+        assertFalse(cursor.contains("+") || cursor.contains("/") || cursor.contains("="));
+    }
+
+    @Test
+    void blankOrGarbageCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CursorUtils.decode(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> CursorUtils.decode(" ", 1));
+        // Base64 解码宽松，乱码可能解出一个字段，但读取字段时一定失败
+        assertThrows(IllegalArgumentException.class,
+                () -> CursorUtils.decode("%%%not-base64%%%", 1).getLong(0, 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void wrongFieldCountIsRejected() {
+        String cursor = CursorUtils.encode(1, 2);
+        assertThrows(IllegalArgumentException.class, () -> CursorUtils.decode(cursor, 3));
+        assertThrows(IllegalArgumentException.class, () -> CursorUtils.decode(cursor, 1));
+    }
+
+    @Test
+    void nonNumericFieldIsRejected() {
+        CursorUtils.Cursor parsed = CursorUtils.decode(Base64.encodeUrlSafe("abc,1.5x,"), 3);
+        assertThrows(IllegalArgumentException.class, () -> parsed.getLong(0, 0, Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> parsed.getDouble(1, 0, Double.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> parsed.getInt(2, 0, 10));
+    }
+
+    @Test
+    void outOfRangeFieldIsRejected() {
+        CursorUtils.Cursor parsed = CursorUtils.decode(CursorUtils.encode(-1, 2147483648L, 0), 3);
+        assertThrows(IllegalArgumentException.class, () -> parsed.getInt(0, 0, SystemConstants.MAX_SCROLL_OFFSET));
+        assertThrows(IllegalArgumentException.class, () -> parsed.getInt(1, 0, Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> parsed.getLong(2, 1, Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class,
+                () -> CursorUtils.decode(CursorUtils.encode(SystemConstants.MAX_SCROLL_OFFSET + 1), 1)
+                        .getInt(0, 0, SystemConstants.MAX_SCROLL_OFFSET));
+    }
+
+    @Test
+    void nonFiniteDoubleIsRejected() {
+        for (String value : new String[]{"NaN", "Infinity", "-Infinity"}) {
+            CursorUtils.Cursor parsed = CursorUtils.decode(CursorUtils.encode(value), 1);
+            assertThrows(IllegalArgumentException.class, () -> parsed.getDouble(0, -Double.MAX_VALUE, Double.MAX_VALUE));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoUtilsTest {
+
+    // 杭州 拱宸桥附近
+    private static final double X = 120.149192;
+    private static final double Y = 30.316078;
+
+    @Test
+    void geohashKnownValues() {
+        // 公开的参考值
+        assertEquals("ezs42", GeoUtils.geohash(-5.6, 42.6, 5));
+        assertEquals("u4pruydqqvj", GeoUtils.geohash(10.40744, 57.64911, 11));
+        // 精度越高，前缀不变
+        assertTrue(GeoUtils.geohash(X, Y, 9).startsWith(GeoUtils.geohash(X, Y, 6)));
+    }
+
+    @Test
+    void geohashBoxContainsPoint() {
+        for (int precision = 1; precision <= 9; precision++) {
+            double[] box = GeoUtils.geohashBox(GeoUtils.geohash(X, Y, precision));
+            assertTrue(box[0] <= X && X < box[2]);
+            assertTrue(box[1] <= Y && Y < box[3]);
+            // 网格中心的 geohash 与该点相同
+            assertEquals(GeoUtils.geohash(X, Y, precision),
+                    GeoUtils.geohash((box[0] + box[2]) / 2, (box[1] + box[3]) / 2, precision));
+        }
+    }
+
+    @Test
+    void distance() {
+        assertEquals(0, GeoUtils.distance(X, Y, X, Y), 1e-9);
+        // 一度纬度
+        assertEquals(GeoUtils.METERS_PER_DEGREE, GeoUtils.distance(X, Y, X, Y + 1), 1e-6);
+        // 对称
+        assertEquals(GeoUtils.distance(X, Y, 120.2, 30.3), GeoUtils.distance(120.2, 30.3, X, Y), 1e-9);
+        // 经度跨度换算后的距离与 haversine 一致（误差 1%）
+        double lon = GeoUtils.lonDegrees(5000, Y);
+        assertEquals(5000, GeoUtils.distance(X, Y, X + lon, Y), 50);
+    }
+
+    @Test
+    void halfDiagonalOfPrecision6Cell() {
+        double[] box = GeoUtils.geohashBox(GeoUtils.geohash(X, Y, 6));
+        double half = GeoUtils.halfDiagonal(box);
+        // 6 位网格约 1.2 km × 0.6 km，半对角线约 600 m
+        assertTrue(half > 500 && half < 700, "halfDiagonal = " + half);
+    }
+
+    @Test
+    void geohashesWithinCoversAllNearbyCells() {
+        int precision = SystemConstants.SHOP_TILE_PRECISION;
+        double meters = 5000;
+        Set<String> hashes = GeoUtils.geohashesWithin(X, Y, meters, precision);
+        assertTrue(hashes.contains(GeoUtils.geohash(X, Y, precision)));
+
+        // 在 meters 范围内随机取点，所在网格必须都被包含
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double r = Math.sqrt(random.nextDouble()) * meters * 0.999;
+            double px = X + GeoUtils.lonDegrees(r * Math.cos(angle), Y);
+            double py = Y + GeoUtils.latDegrees(r * Math.sin(angle));
+            if (GeoUtils.distance(X, Y, px, py) <= meters) {
+                assertTrue(hashes.contains(GeoUtils.geohash(px, py, precision)));
+            }
+        }
+
+        // 每个返回的网格都确实与该点距离不超过 meters（中心距离 - 半对角线）
+        for (String hash : hashes) {
+            double[] box = GeoUtils.geohashBox(hash);
+            double d = GeoUtils.distance(X, Y, (box[0] + box[2]) / 2, (box[1] + box[3]) / 2);
+            assertTrue(d - GeoUtils.halfDiagonal(box) <= meters + 1e-6);
+        }
+        // 只枚举附近的网格，而不是整个城市
+        assertTrue(hashes.size() < 400, "size = " + hashes.size());
+    }
+
+    @Test
+    void geohashesWithinAcrossAntimeridian() {
+        Set<String> hashes = GeoUtils.geohashesWithin(179.999, 0, 2000, 6);
+        assertTrue(hashes.contains(GeoUtils.geohash(-179.999, 0, 6)));
+    }
+}
@@ -0,0 +1,95 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenHoursTest {
+
+    // 2024-01-01 是周一
+    private static LocalDateTime at(int dayOfWeek, int hour, int minute) {
+        return LocalDateTime.of(2024, 1, dayOfWeek, hour, minute);
+    }
+
+    private static boolean open(long[] bits, int dayOfWeek, int hour, int minute) {
+        return OpenHours.isOpen(bits, OpenHours.slotOf(at(dayOfWeek, hour, minute)));
+    }
+
+    @Test
+    void slotOf() {
+        assertEquals(0, OpenHours.slotOf(at(1, 0, 0)));
+        assertEquals(0, OpenHours.slotOf(at(1, 0, 9)));
+        assertEquals(1, OpenHours.slotOf(at(1, 0, 10)));
+        assertEquals(OpenHours.SLOTS - 1, OpenHours.slotOf(at(7, 23, 59)));
+    }
+
+    @Test
+    void simpleRange() {
+        long[] bits = OpenHours.parse("10:00-22:00");
+        assertFalse(open(bits, 3, 9, 59));
+        assertTrue(open(bits, 3, 10, 0));
+        assertTrue(open(bits, 3, 21, 59));
+        assertFalse(open(bits, 3, 22, 0));
+    }
+
+    @Test
+    void overnightRange() {
+        long[] bits = OpenHours.parse("11:30-03:00");
+        assertTrue(open(bits, 2, 23, 30));
+        assertTrue(open(bits, 3, 2, 50));
+        assertFalse(open(bits, 3, 3, 0));
+        assertFalse(open(bits, 3, 11, 20));
+        // 周日跨夜到周一
+        assertTrue(open(bits, 1, 1, 0));
+    }
+
+    @Test
+    void multipleRangesAndSeparators() {
+        long[] bits = OpenHours.parse("11:00-13:50，17：00 至 20:50");
+        assertTrue(open(bits, 5, 12, 0));
+        assertFalse(open(bits, 5, 15, 0));
+        assertTrue(open(bits, 5, 18, 0));
+        assertFalse(open(bits, 5, 21, 0));
+    }
+
+    @Test
+    void partialSlotIsNotMarked() {
+        // 10:05 开门，10:00~10:10 这个时间片没有被完整覆盖
+        long[] bits = OpenHours.parse("10:05-12:00");
+        assertFalse(open(bits, 1, 10, 6));
+        assertTrue(open(bits, 1, 10, 10));
+    }
+
+    @Test
+    void allDay() {
+        for (String text : new String[]{"全天", "全天营业", "24小时", "24 小时营业", "00:00-24:00", "08:00-08:00"}) {
+            long[] bits = OpenHours.parse(text);
+            assertNotNull(bits, text);
+            for (int slot = 0; slot < OpenHours.SLOTS; slot++) {
+                assertTrue(OpenHours.isOpen(bits, slot), text + " slot " + slot);
+            }
+        }
+    }
+
+    @Test
+    void malformedInput() {
+        assertNull(OpenHours.parse(null));
+        assertNull(OpenHours.parse("  "));
+        assertNull(OpenHours.parse("暂停营业"));
+        assertNull(OpenHours.parse("25:00-26:00"));
+        assertNull(OpenHours.parse("10:60-22:00"));
+        assertNull(OpenHours.parse("10点-22点"));
+        // 无法解析视为不营业
+        assertFalse(OpenHours.isOpen(null, 0));
+    }
+
+    @Test
+    void invalidRangeIsSkipped() {
+        long[] bits = OpenHours.parse("25:00-26:00,10:00-12:00");
+        assertNotNull(bits);
+        assertTrue(open(bits, 1, 11, 0));
+        assertFalse(open(bits, 1, 13, 0));
+    }
+}
@@ -0,0 +1,98 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShopGeoIndexTest {
+
+    private static final double X = 120.149192;
+    private static final double Y = 30.316078;
+
+    private ShopGeoIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ShopGeoIndex();
+        ReflectionTestUtils.setField(index, "enabled", true);
+        index.load(Arrays.asList(
+                shop(1L, 1L, X + 0.003, Y),
+                shop(2L, 1L, X + 0.001, Y),
+                shop(3L, 1L, X + 0.02, Y),
+                shop(4L, 1L, X - 0.001, Y),
+                shop(5L, 1L, X + 0.1, Y),
+                shop(6L, 2L, X, Y)
+        ));
+    }
+
+    @Test
+    void searchOrdersByDistanceThenId() {
+        // 2 和 4 距离相同，按 id 排序；5 超出 5 km；6 是其他类型
+        assertEquals(Arrays.asList(2L, 4L, 1L, 3L), ids(index.searchAfter(1L, X, Y, 5000, null, 10, null)));
+        assertEquals(Arrays.asList(2L, 4L), ids(index.searchAfter(1L, X, Y, 5000, null, 2, null)));
+    }
+
+    @Test
+    void cursorPagesWithoutGapsOrDuplicates() {
+        List<Long> all = new ArrayList<>();
+        GeoHit after = null;
+        while (true) {
+            List<GeoHit> page = index.searchAfter(1L, X, Y, 5000, after, 1, null);
+            if (page.isEmpty()) {
+                break;
+            }
+            all.addAll(ids(page));
+            after = page.get(page.size() - 1);
+        }
+        assertEquals(Arrays.asList(2L, 4L, 1L, 3L), all);
+    }
+
+    @Test
+    void filterSkipsShops() {
+        assertEquals(Arrays.asList(4L, 3L), ids(index.searchAfter(1L, X, Y, 5000, null, 10, id -> id != 2L && id != 1L)));
+    }
+
+    @Test
+    void putMovesShopBetweenTypesAndCells() {
+        index.put(shop(3L, 2L, X + 0.0005, Y));
+        assertEquals(Arrays.asList(2L, 4L, 1L), ids(index.searchAfter(1L, X, Y, 5000, null, 10, null)));
+        assertEquals(Arrays.asList(6L, 3L), ids(index.searchAfter(2L, X, Y, 5000, null, 10, null)));
+
+        index.remove(6L);
+        assertEquals(Arrays.asList(3L), ids(index.searchAfter(2L, X, Y, 5000, null, 10, null)));
+    }
+
+    @Test
+    void changesDuringLoadSurviveTheSwap() {
+        index.beginLoad();
+        // 全量加载读取的是修改之前的数据
+        List<Shop> snapshot = Arrays.asList(
+                shop(1L, 1L, X + 0.003, Y),
+                shop(2L, 1L, X + 0.001, Y));
+        index.put(shop(1L, 1L, X + 0.0005, Y));
+        index.put(shop(7L, 1L, X + 0.002, Y));
+        index.remove(2L);
+        index.load(snapshot);
+
+        assertEquals(Arrays.asList(1L, 7L), ids(index.searchAfter(1L, X, Y, 5000, null, 10, null)));
+        // 加载完成后不再记录
+        index.load(snapshot);
+        assertEquals(Arrays.asList(2L, 1L), ids(index.searchAfter(1L, X, Y, 5000, null, 10, null)));
+    }
+
+    private static List<Long> ids(List<GeoHit> hits) {
+        return hits.stream().map(GeoHit::getId).collect(Collectors.toList());
+    }
+
+    private static Shop shop(Long id, Long typeId, double x, double y) {
+        return new Shop().setId(id).setTypeId(typeId).setX(x).setY(y);
+    }
+}
@@ -0,0 +1,90 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShopNameIndexTest {
+
+    private ShopNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ShopNameIndex();
+        ReflectionTestUtils.setField(index, "enabled", true);
+        index.load(Arrays.asList(
+                shop(1L, "海底捞火锅(水晶城店)", "大关"),
+                shop(2L, "火锅", "拱宸桥"),
+                shop(3L, "小龙坎火锅", "运河上街"),
+                shop(4L, "火锅大王", "北城天地"),
+                shop(5L, "四季火锅烧烤", "大关"),
+                shop(6L, "开乐迪KTV", "火锅街"),
+                shop(7L, "锅火烧", "大关")
+        ));
+    }
+
+    @Test
+    void rankingOrder() {
+        // 完全相同 > 前缀（名称短的在前）> 名称包含（名称短的在前）> 商圈包含
+        assertEquals(Arrays.asList(2L, 4L, 3L, 5L, 1L, 6L), index.search("火锅", 0, 10));
+    }
+
+    @Test
+    void sameRankOrderedByNameLengthThenId() {
+        // 都是商圈匹配，按名称长度排序
+        assertEquals(Arrays.asList(7L, 5L, 1L), index.search("大关", 0, 10));
+        index.put(shop(8L, "烧烤店", "大关"));
+        assertEquals(Arrays.asList(7L, 8L, 5L, 1L), index.search("大关", 0, 10));
+    }
+
+    @Test
+    void paging() {
+        assertEquals(Arrays.asList(2L, 4L), index.search("火锅", 0, 2));
+        assertEquals(Arrays.asList(3L, 5L), index.search("火锅", 2, 2));
+        assertEquals(Collections.singletonList(6L), index.search("火锅", 5, 2));
+        assertTrue(index.search("火锅", 6, 2).isEmpty());
+    }
+
+    @Test
+    void bigramsMustBeContiguous() {
+        // "锅火烧" 含有 "火" "锅" 两个单字，但不包含 "火锅"
+        assertFalse(index.search("火锅", 0, 10).contains(7L));
+        assertTrue(index.search("不存在", 0, 10).isEmpty());
+    }
+
+    @Test
+    void caseAndBlankInsensitive() {
+        assertEquals(Collections.singletonList(6L), index.search(" ktv ", 0, 10));
+        assertTrue(index.search("  ", 0, 10).isEmpty());
+    }
+
+    @Test
+    void filter() {
+        assertEquals(Arrays.asList(4L, 6L), index.search("火锅", 0, 10, id -> id % 2 == 0 && id != 2));
+    }
+
+    @Test
+    void putAndRemove() {
+        index.put(shop(2L, "烤肉", "拱宸桥"));
+        assertFalse(index.search("火锅", 0, 10).contains(2L));
+        assertEquals(Collections.singletonList(2L), index.search("烤肉", 0, 10));
+
+        index.remove(4L);
+        assertEquals(Arrays.asList(3L, 5L, 1L, 6L), index.search("火锅", 0, 10));
+        assertEquals(6, index.size());
+    }
+
+    private static Shop shop(Long id, String name, String area) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName(name);
+        shop.setArea(area);
+        return shop;
+    }
+}